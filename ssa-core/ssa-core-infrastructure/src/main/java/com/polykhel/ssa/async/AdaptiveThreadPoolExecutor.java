@@ -0,0 +1,99 @@
+package com.polykhel.ssa.async;
+
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ThreadPoolExecutor} growing on queue wait time rather than on queue saturation.
+ * <p>
+ * A plain thread pool only starts threads above its core size once its queue is full, so with a
+ * large queue the tasks wait instead of the pool scaling. This executor raises its core size, up to
+ * the maximum pool size, whenever a queued task has been waiting longer than the threshold, and
+ * lowers it back towards the initial core size once the queue is drained. Surplus threads then
+ * terminate after the keep alive time.
+ * <p>
+ * The wait time is checked on submission and when a worker takes a task from the queue.
+ */
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final int initialCorePoolSize;
+
+    private final long queueWaitThresholdNanos;
+
+    private final Lock resizeLock = new ReentrantLock();
+
+    public AdaptiveThreadPoolExecutor(
+        int corePoolSize,
+        int maxPoolSize,
+        int queueCapacity,
+        Duration keepAlive,
+        Duration queueWaitThreshold,
+        ThreadFactory threadFactory,
+        RejectedExecutionHandler rejectedExecutionHandler) {
+        super(corePoolSize, maxPoolSize, keepAlive.toMillis(), TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(queueCapacity), threadFactory, rejectedExecutionHandler);
+        this.initialCorePoolSize = corePoolSize;
+        this.queueWaitThresholdNanos = queueWaitThreshold.toNanos();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new QueuedTask(command));
+        Runnable head = getQueue().peek();
+        if (head instanceof QueuedTask && ((QueuedTask) head).waitTime() > queueWaitThresholdNanos) {
+            resize(1);
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        super.beforeExecute(thread, task);
+        if (!(task instanceof QueuedTask)) {
+            return;
+        }
+        long waitTime = ((QueuedTask) task).waitTime();
+        if (waitTime > queueWaitThresholdNanos) {
+            resize(1);
+        } else if (getCorePoolSize() > initialCorePoolSize && getQueue().isEmpty()) {
+            resize(-1);
+        }
+    }
+
+    private void resize(int delta) {
+        if (!resizeLock.tryLock()) {
+            return;
+        }
+        try {
+            int corePoolSize = getCorePoolSize() + delta;
+            if (corePoolSize >= initialCorePoolSize && corePoolSize <= getMaximumPoolSize()) {
+                setCorePoolSize(corePoolSize);
+            }
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    private static final class QueuedTask implements Runnable {
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedTask(Runnable task) {
+            this.task = task;
+        }
+
+        private long waitTime() {
+            return System.nanoTime() - queuedAt;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package com.polykhel.ssa.async;
 
+import com.polykhel.ssa.config.CoreProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.task.TaskExecutionProperties;
+import org.springframework.boot.task.TaskSchedulerBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.time.Duration;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Async Configuration class.
+ * <p>
+ * The pool is sized from the {@code core.async} properties, threads are named after
+ * {@code spring.task.execution.thread-name-prefix}. In {@code virtual} mode, the scheduler threads
+ * also hand the scheduled jobs over to the virtual threads.
  */
 @Configuration
 @EnableAsync
@@ -24,24 +40,97 @@ public class AsyncConfig implements AsyncConfigurer {
 
     private final TaskExecutionProperties taskExecutionProperties;
 
-    public AsyncConfig(TaskExecutionProperties taskExecutionProperties) {
+    private final CoreProperties coreProperties;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public AsyncConfig(
+        TaskExecutionProperties taskExecutionProperties,
+        CoreProperties coreProperties,
+        ObjectProvider<MeterRegistry> meterRegistry) {
         this.taskExecutionProperties = taskExecutionProperties;
+        this.coreProperties = coreProperties;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
-        log.debug("Creating Async Task Executor");
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(taskExecutionProperties.getPool().getCoreSize());
-        executor.setMaxPoolSize(taskExecutionProperties.getPool().getMaxSize());
-        executor.setQueueCapacity(taskExecutionProperties.getPool().getQueueCapacity());
-        executor.setThreadNamePrefix(taskExecutionProperties.getThreadNamePrefix());
-        return new AsyncTaskExecutorWithExceptionHandling(executor);
+        CoreProperties.Async properties = coreProperties.getAsync();
+        log.debug("Creating Async Task Executor in {} mode", properties.getMode());
+        AsyncTaskExecutor executor;
+        CountingRejectedExecutionHandler rejectedExecutionHandler = null;
+        if (properties.getMode() == AsyncMode.VIRTUAL) {
+            executor = bulkheadTaskExecutor();
+        } else if (properties.getMode() == AsyncMode.ADAPTIVE) {
+            rejectedExecutionHandler = rejectedExecutionHandler(properties);
+            executor = new ConcurrentTaskExecutor(new AdaptiveThreadPoolExecutor(
+                properties.getCorePoolSize(),
+                properties.getMaxPoolSize(),
+                properties.getQueueCapacity(),
+                Duration.ofSeconds(properties.getKeepAliveSeconds()),
+                Duration.ofMillis(properties.getQueueWaitThresholdInMillis()),
+                new CustomizableThreadFactory(taskExecutionProperties.getThreadNamePrefix()),
+                rejectedExecutionHandler));
+        } else {
+            rejectedExecutionHandler = rejectedExecutionHandler(properties);
+            ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+            threadPoolTaskExecutor.setCorePoolSize(properties.getCorePoolSize());
+            threadPoolTaskExecutor.setMaxPoolSize(properties.getMaxPoolSize());
+            threadPoolTaskExecutor.setQueueCapacity(properties.getQueueCapacity());
+            threadPoolTaskExecutor.setKeepAliveSeconds(properties.getKeepAliveSeconds());
+            threadPoolTaskExecutor.setThreadNamePrefix(taskExecutionProperties.getThreadNamePrefix());
+            threadPoolTaskExecutor.setRejectedExecutionHandler(rejectedExecutionHandler);
+            executor = threadPoolTaskExecutor;
+        }
+        AsyncTaskExecutorWithExceptionHandling asyncExecutor =
+            new AsyncTaskExecutorWithExceptionHandling(executor, "taskExecutor", rejectedExecutionHandler);
+        meterRegistry.ifAvailable(asyncExecutor::bindTo);
+        return asyncExecutor;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "core.async.mode", havingValue = "virtual")
+    public BulkheadTaskExecutor bulkheadTaskExecutor() {
+        CoreProperties.Async properties = coreProperties.getAsync();
+        return new BulkheadTaskExecutor(
+            VirtualThreads.newThreadPerTaskExecutor(taskExecutionProperties.getThreadNamePrefix()),
+            properties.getBulkheads(),
+            properties.getMaxPoolSize(),
+            properties.getQueueCapacity());
+    }
+
+    @Bean(name = "taskScheduler")
+    @ConditionalOnProperty(name = "core.async.mode", havingValue = "virtual")
+    public OffloadingTaskScheduler taskScheduler(TaskSchedulerBuilder taskSchedulerBuilder) {
+        log.debug("Creating Offloading Task Scheduler");
+        ThreadPoolTaskScheduler scheduler = taskSchedulerBuilder.build();
+        scheduler.initialize();
+        return new OffloadingTaskScheduler(scheduler, bulkheadTaskExecutor());
     }
 
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
     }
+
+    private static CountingRejectedExecutionHandler rejectedExecutionHandler(CoreProperties.Async properties) {
+        return new CountingRejectedExecutionHandler(rejectionPolicy(properties));
+    }
+
+    private static RejectedExecutionHandler rejectionPolicy(CoreProperties.Async properties) {
+        switch (properties.getRejectionPolicy()) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            case BLOCK:
+                return new BlockingRejectedExecutionHandler(
+                    Duration.ofMillis(properties.getBlockTimeoutInMillis()));
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
 }
@@ -0,0 +1,8 @@
+package com.polykhel.ssa.async;
+
+/**
+ * How the async task executor runs the tasks, see {@code core.async.mode}.
+ */
+public enum AsyncMode {
+    STANDARD, ADAPTIVE, VIRTUAL
+}
@@ -1,31 +1,88 @@
 package com.polykhel.ssa.async;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
 
 /**
  * ExceptionHandlingAsyncTaskExecutor class.
+ * <p>
+ * Tasks run with the {@link ContextSnapshot security context and MDC} of the submitting thread.
+ * <p>
+ * Once bound to a {@link MeterRegistry}, also publishes the queue depth, active and pool thread
+ * counts of the underlying thread pool, the time tasks waited before running, their execution time
+ * by outcome and the number of rejected submissions.
  */
 @Slf4j
 public class AsyncTaskExecutorWithExceptionHandling
-    implements AsyncTaskExecutor, InitializingBean, DisposableBean {
+    implements AsyncTaskExecutor, CategorizedTaskExecutor, InitializingBean, DisposableBean, MeterBinder {
 
     static final String EXCEPTION_MESSAGE = "Caught async exception";
 
     private final AsyncTaskExecutor executor;
 
+    private final String name;
+
+    private volatile Timer waitTimer;
+
+    private volatile Timer successTimer;
+
+    private volatile Timer errorTimer;
+
+    private final CountingRejectedExecutionHandler rejectedExecutionHandler;
+
+    private final LongAdder rejectedCount = new LongAdder();
+
     /**
      * Constructor for ExceptionHandlingAsyncTaskExecutor.
      *
      * @param executor an AsyncTaskExecutor object.
      */
     public AsyncTaskExecutorWithExceptionHandling(AsyncTaskExecutor executor) {
+        this(executor, "taskExecutor");
+    }
+
+    /**
+     * Constructor for ExceptionHandlingAsyncTaskExecutor.
+     *
+     * @param executor an AsyncTaskExecutor object.
+     * @param name     the value of the {@code name} tag of the executor metrics.
+     */
+    public AsyncTaskExecutorWithExceptionHandling(AsyncTaskExecutor executor, String name) {
+        this(executor, name, null);
+    }
+
+    /**
+     * Constructor for ExceptionHandlingAsyncTaskExecutor.
+     *
+     * @param executor                 an AsyncTaskExecutor object.
+     * @param name                     the value of the {@code name} tag of the executor metrics.
+     * @param rejectedExecutionHandler the rejection handler of the underlying pool, which counts the
+     *                                 rejected tasks whatever the rejection policy, or {@code null}.
+     */
+    public AsyncTaskExecutorWithExceptionHandling(
+        AsyncTaskExecutor executor, String name, CountingRejectedExecutionHandler rejectedExecutionHandler) {
         this.executor = executor;
+        this.name = name;
+        this.rejectedExecutionHandler = rejectedExecutionHandler;
     }
 
     /**
@@ -36,9 +93,45 @@ public class AsyncTaskExecutorWithExceptionHandling
         if (executor instanceof DisposableBean) {
             DisposableBean bean = (DisposableBean) executor;
             bean.destroy();
+        } else if (executor instanceof ConcurrentTaskExecutor &&
+            ((ConcurrentTaskExecutor) executor).getConcurrentExecutor() instanceof ExecutorService) {
+            ((ExecutorService) ((ConcurrentTaskExecutor) executor).getConcurrentExecutor()).shutdown();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("name", name);
+        gauge(registry, "executor.queued", "Tasks waiting in the queue", tags,
+            pool -> pool.getQueue().size());
+        gauge(registry, "executor.queue.remaining", "Free slots in the queue", tags,
+            pool -> pool.getQueue().remainingCapacity());
+        gauge(registry, "executor.active", "Threads actively running tasks", tags,
+            ThreadPoolExecutor::getActiveCount);
+        gauge(registry, "executor.pool.size", "Current number of threads in the pool", tags,
+            ThreadPoolExecutor::getPoolSize);
+        gauge(registry, "executor.pool.core", "Current core size of the pool", tags,
+            ThreadPoolExecutor::getCorePoolSize);
+        FunctionCounter.builder(
+            "executor.completed", this, e -> e.applyToPool(ThreadPoolExecutor::getCompletedTaskCount))
+            .tags(tags)
+            .description("Tasks that have completed execution")
+            .register(registry);
+        this.waitTimer = Timer.builder("executor.queue.wait")
+            .tags(tags)
+            .description("Time tasks spent in the queue before running")
+            .register(registry);
+        this.successTimer = executionTimer(registry, tags, "success");
+        this.errorTimer = executionTimer(registry, tags, "error");
+        FunctionCounter.builder("executor.rejected", this, AsyncTaskExecutorWithExceptionHandling::getRejectedCount)
+            .tags(tags)
+            .description("Tasks rejected by the executor, whatever the rejection policy did with them")
+            .register(registry);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -55,7 +148,11 @@ public class AsyncTaskExecutorWithExceptionHandling
      */
     @Override
     public void execute(Runnable task) {
-        executor.execute(handleRunnable(task));
+        try {
+            executor.execute(handleRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     /**
@@ -63,7 +160,25 @@ public class AsyncTaskExecutorWithExceptionHandling
      */
     @Override
     public void execute(Runnable task, long startTimeout) {
-        executor.execute(handleRunnable(task), startTimeout);
+        try {
+            executor.execute(handleRunnable(task), startTimeout);
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The category is ignored unless the underlying executor is a {@link CategorizedTaskExecutor}.
+     */
+    @Override
+    public void execute(String category, Runnable task) {
+        try {
+            CategorizedTaskExecutor.execute(executor, category, handleRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     /**
@@ -71,7 +186,11 @@ public class AsyncTaskExecutorWithExceptionHandling
      */
     @Override
     public Future<?> submit(Runnable task) {
-        return executor.submit(handleRunnable(task));
+        try {
+            return executor.submit(handleRunnable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     /**
@@ -79,30 +198,121 @@ public class AsyncTaskExecutorWithExceptionHandling
      */
     @Override
     public <T> Future<T> submit(Callable<T> task) {
-        return executor.submit(handleCallable(task));
+        try {
+            return executor.submit(handleCallable(task));
+        } catch (RejectedExecutionException e) {
+            throw rejected(e);
+        }
     }
 
     private Runnable handleRunnable(final Runnable task) {
+        final ContextSnapshot context = ContextSnapshot.capture();
+        final long submittedAt = System.nanoTime();
         return () -> {
+            ContextSnapshot previous = context.apply();
+            long startedAt = started(submittedAt);
+            boolean failed = false;
             try {
                 task.run();
             } catch (Exception e) {
+                failed = true;
                 handle(e);
+            } finally {
+                finished(startedAt, failed);
+                previous.restore();
             }
         };
     }
 
     private <T> Callable<T> handleCallable(final Callable<T> task) {
+        final ContextSnapshot context = ContextSnapshot.capture();
+        final long submittedAt = System.nanoTime();
         return () -> {
+            ContextSnapshot previous = context.apply();
+            long startedAt = started(submittedAt);
+            boolean failed = false;
             try {
                 return task.call();
             } catch (Exception e) {
+                failed = true;
                 handle(e);
                 throw e;
+            } finally {
+                finished(startedAt, failed);
+                previous.restore();
             }
         };
     }
 
+    private long started(long submittedAt) {
+        long now = System.nanoTime();
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(now - submittedAt, TimeUnit.NANOSECONDS);
+        }
+        return now;
+    }
+
+    private void finished(long startedAt, boolean failed) {
+        Timer timer = failed ? errorTimer : successTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Rejections that went through the rejection handler are already counted by it.
+     */
+    private RejectedExecutionException rejected(RejectedExecutionException e) {
+        if (rejectedExecutionHandler == null) {
+            rejectedCount.increment();
+        }
+        return e;
+    }
+
+    private double getRejectedCount() {
+        long count = rejectedCount.sum();
+        if (rejectedExecutionHandler != null) {
+            count += rejectedExecutionHandler.getCount();
+        }
+        return count;
+    }
+
+    private static Timer executionTimer(MeterRegistry registry, Tags tags, String outcome) {
+        return Timer.builder("executor.execution")
+            .tags(tags)
+            .tag("outcome", outcome)
+            .description("Execution time of the tasks")
+            .register(registry);
+    }
+
+    private void gauge(
+        MeterRegistry registry, String metric, String description, Tags tags,
+        ToDoubleFunction<ThreadPoolExecutor> function) {
+        Gauge.builder(metric, this, e -> e.applyToPool(function))
+            .tags(tags)
+            .description(description)
+            .register(registry);
+    }
+
+    /**
+     * The underlying pool is only known once the executor is initialized.
+     */
+    private double applyToPool(ToDoubleFunction<ThreadPoolExecutor> function) {
+        ThreadPoolExecutor pool = null;
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            try {
+                pool = ((ThreadPoolTaskExecutor) executor).getThreadPoolExecutor();
+            } catch (IllegalStateException e) {
+                // not initialized yet
+            }
+        } else if (executor instanceof ConcurrentTaskExecutor &&
+            ((ConcurrentTaskExecutor) executor).getConcurrentExecutor() instanceof ThreadPoolExecutor) {
+            pool = (ThreadPoolExecutor) ((ConcurrentTaskExecutor) executor).getConcurrentExecutor();
+        }
+        return pool != null ? function.applyAsDouble(pool) : Double.NaN;
+    }
+
     /**
      * Handle exception.
      *
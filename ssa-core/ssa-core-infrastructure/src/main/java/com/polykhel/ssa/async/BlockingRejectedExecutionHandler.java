@@ -0,0 +1,36 @@
+package com.polykhel.ssa.async;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Back-pressure policy: the submitting thread waits for room in the queue, up to a timeout, before
+ * the task is rejected.
+ */
+public class BlockingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    private final long timeoutMillis;
+
+    public BlockingRejectedExecutionHandler(Duration timeout) {
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor " + executor + " has been shut down");
+        }
+        try {
+            if (!executor.getQueue().offer(task, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException(
+                    "Task " + task + " rejected from " + executor + " after waiting " + timeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting to queue task " + task, e);
+        }
+    }
+}
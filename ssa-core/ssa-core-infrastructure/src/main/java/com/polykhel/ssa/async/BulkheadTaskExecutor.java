@@ -0,0 +1,183 @@
+package com.polykhel.ssa.async;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs every task on its own thread, typically a virtual thread, and bounds the number of tasks of
+ * a same category running at once with a semaphore.
+ * <p>
+ * A task is only handed over to the executor once it holds a permit of its category; until then it
+ * waits in the bounded queue of the category, so a saturated category never blocks the submitting
+ * thread nor the other categories, and never creates more threads than its limit. A task submitted
+ * while the queue of its category is full is rejected.
+ */
+@Slf4j
+public class BulkheadTaskExecutor implements AsyncTaskExecutor, CategorizedTaskExecutor, DisposableBean, MeterBinder {
+
+    private final ExecutorService executor;
+
+    private final Map<String, Integer> limits;
+
+    private final int defaultLimit;
+
+    private final int queueCapacity;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param executor      the thread-per-task executor running the tasks.
+     * @param limits        the maximum number of concurrent tasks per category.
+     * @param defaultLimit  the maximum number of concurrent tasks of the other categories.
+     * @param queueCapacity the maximum number of tasks of a category waiting for a permit.
+     */
+    public BulkheadTaskExecutor(ExecutorService executor, Map<String, Integer> limits, int defaultLimit,
+                                int queueCapacity) {
+        this.executor = executor;
+        this.limits = limits;
+        this.defaultLimit = defaultLimit;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(DEFAULT_CATEGORY, task);
+    }
+
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(DEFAULT_CATEGORY, task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        FutureTask<Object> future = new FutureTask<>(task, null);
+        execute(DEFAULT_CATEGORY, future);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        execute(DEFAULT_CATEGORY, future);
+        return future;
+    }
+
+    /**
+     * Run a task once fewer than the limit of its category are running.
+     *
+     * @param category the bulkhead of the task.
+     * @param task     the task to run.
+     * @throws RejectedExecutionException if the queue of the category is full, or the executor is
+     *                                    shut down.
+     */
+    @Override
+    public void execute(String category, Runnable task) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor is shut down, task " + task + " is rejected");
+        }
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(category, this::createBulkhead);
+        if (!bulkhead.queue.offer(task)) {
+            throw new RejectedExecutionException(
+                "The '" + category + "' bulkhead queue is full, task " + task + " is rejected");
+        }
+        bulkhead.dispatch();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        bulkheads.forEach((category, bulkhead) -> registerGauges(registry, category, bulkhead));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private Bulkhead createBulkhead(String category) {
+        Bulkhead bulkhead = new Bulkhead(category, limits.getOrDefault(category, defaultLimit), queueCapacity);
+        MeterRegistry registry = this.meterRegistry;
+        if (registry != null) {
+            registerGauges(registry, category, bulkhead);
+        }
+        return bulkhead;
+    }
+
+    private static void registerGauges(MeterRegistry registry, String category, Bulkhead bulkhead) {
+        Gauge.builder("executor.bulkhead.available", bulkhead.permits, Semaphore::availablePermits)
+            .tag("category", category)
+            .description("Tasks of the category that can still start without waiting")
+            .register(registry);
+        Gauge.builder("executor.bulkhead.queued", bulkhead.queue, BlockingQueue::size)
+            .tag("category", category)
+            .description("Tasks of the category waiting for a permit")
+            .register(registry);
+    }
+
+    private final class Bulkhead {
+        private final String category;
+
+        private final Semaphore permits;
+
+        private final BlockingQueue<Runnable> queue;
+
+        private Bulkhead(String category, int limit, int queueCapacity) {
+            this.category = category;
+            this.permits = new Semaphore(limit);
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Hand the queued tasks over to the executor while permits are available. Called after every
+         * submission and after every completed task, so a queued task never misses a released permit.
+         */
+        private void dispatch() {
+            while (!queue.isEmpty() && permits.tryAcquire()) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    permits.release();
+                    continue;
+                }
+                try {
+                    executor.execute(() -> run(task));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        }
+
+        private void run(Runnable task) {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+                try {
+                    dispatch();
+                } catch (RejectedExecutionException e) {
+                    log.warn("Executor is shut down, {} queued tasks of the '{}' bulkhead are skipped",
+                        queue.size(), category);
+                    queue.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.polykhel.ssa.async;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor able to isolate the tasks of a category, such as the Liquibase migration or the token
+ * refreshes, from the other tasks.
+ */
+public interface CategorizedTaskExecutor extends Executor {
+
+    String DEFAULT_CATEGORY = "default";
+
+    String SCHEDULED_CATEGORY = "scheduled";
+
+    String LIQUIBASE_CATEGORY = "liquibase";
+
+    String TOKEN_CATEGORY = "token";
+
+    String CONFIG_REFRESH_CATEGORY = "config-refresh";
+
+    /**
+     * Run a task within the limits of its category.
+     *
+     * @param category the category of the task.
+     * @param task     the task to run.
+     */
+    void execute(String category, Runnable task);
+
+    /**
+     * Run a task in its category when the executor supports categories, as a plain task otherwise.
+     *
+     * @param executor the executor to run the task with.
+     * @param category the category of the task.
+     * @param task     the task to run.
+     */
+    static void execute(Executor executor, String category, Runnable task) {
+        if (executor instanceof CategorizedTaskExecutor) {
+            ((CategorizedTaskExecutor) executor).execute(category, task);
+        } else {
+            executor.execute(task);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.polykhel.ssa.async;
+
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the {@link SecurityContext} and logging MDC of a thread, to be restored on
+ * the thread running an async task.
+ * <p>
+ * Capturing is cheap: the security context is kept by reference, and Logback's copy-on-write MDC
+ * map is shared rather than copied, as Logback copies it on the next write after a read. A thread
+ * without authentication nor MDC entries is captured as {@link #EMPTY}, whose application is a
+ * no-op.
+ */
+public final class ContextSnapshot {
+
+    public static final ContextSnapshot EMPTY = new ContextSnapshot(null, null);
+
+    private final SecurityContext securityContext;
+
+    private final Map<String, String> mdc;
+
+    private ContextSnapshot(SecurityContext securityContext, Map<String, String> mdc) {
+        this.securityContext = securityContext;
+        this.mdc = mdc;
+    }
+
+    /**
+     * Capture the context of the current thread.
+     *
+     * @return the snapshot, {@link #EMPTY} if there is nothing to propagate.
+     */
+    public static ContextSnapshot capture() {
+        ContextSnapshot snapshot = current();
+        if (snapshot.securityContext == null && snapshot.mdc == null) {
+            return EMPTY;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Install this snapshot on the current thread.
+     *
+     * @return the context that was replaced, to {@link #restore()} once the task is done.
+     */
+    public ContextSnapshot apply() {
+        if (this == EMPTY) {
+            return EMPTY;
+        }
+        ContextSnapshot previous = current();
+        restore();
+        return previous;
+    }
+
+    /**
+     * Put back a context replaced by {@link #apply()}.
+     */
+    public void restore() {
+        if (this == EMPTY) {
+            return;
+        }
+        if (securityContext != null) {
+            SecurityContextHolder.setContext(securityContext);
+        } else {
+            SecurityContextHolder.clearContext();
+        }
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+    }
+
+    private static ContextSnapshot current() {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        if (securityContext.getAuthentication() == null) {
+            securityContext = null;
+        }
+        Map<String, String> mdc = mdcMap();
+        if (mdc != null && mdc.isEmpty()) {
+            mdc = null;
+        }
+        return new ContextSnapshot(securityContext, mdc);
+    }
+
+    private static Map<String, String> mdcMap() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter instanceof LogbackMDCAdapter) {
+            return ((LogbackMDCAdapter) adapter).getPropertyMap();
+        }
+        return MDC.getCopyOfContextMap();
+    }
+}
@@ -0,0 +1,33 @@
+package com.polykhel.ssa.async;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts every rejected task before applying the rejection policy, so that the tasks that are
+ * discarded or run by the caller are counted as well as the aborted ones.
+ */
+public class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    private final RejectedExecutionHandler delegate;
+
+    private final LongAdder count = new LongAdder();
+
+    public CountingRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        count.increment();
+        delegate.rejectedExecution(task, executor);
+    }
+
+    /**
+     * @return the number of tasks rejected so far, whatever the policy did with them.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+}
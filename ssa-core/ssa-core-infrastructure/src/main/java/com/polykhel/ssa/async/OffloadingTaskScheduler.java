@@ -0,0 +1,94 @@
+package com.polykhel.ssa.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link TaskScheduler} whose threads only keep time: every run of a scheduled task is handed over
+ * to a {@link BulkheadTaskExecutor} in the {@code scheduled} category, so a job blocked on I/O does
+ * not hold one of the few scheduler threads.
+ * <p>
+ * As the scheduler no longer waits for a run to complete, a run is skipped while the previous run
+ * of the same task is still in progress. This does not keep the fixed-delay semantics: the delay of
+ * {@link #scheduleWithFixedDelay} tasks counts from the hand-over of the previous run, not from its
+ * completion, so they behave like fixed-rate tasks that skip the runs overlapping a slow one.
+ */
+@Slf4j
+public class OffloadingTaskScheduler implements TaskScheduler, DisposableBean {
+
+    private final ThreadPoolTaskScheduler scheduler;
+
+    private final BulkheadTaskExecutor executor;
+
+    public OffloadingTaskScheduler(ThreadPoolTaskScheduler scheduler, BulkheadTaskExecutor executor) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        return scheduler.schedule(offload(task), trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+        return scheduler.schedule(offload(task), startTime);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+        return scheduler.scheduleAtFixedRate(offload(task), startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+        return scheduler.scheduleAtFixedRate(offload(task), period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+        return scheduler.scheduleWithFixedDelay(offload(task), startTime, delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+        return scheduler.scheduleWithFixedDelay(offload(task), delay);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.destroy();
+    }
+
+    private Runnable offload(Runnable task) {
+        AtomicBoolean running = new AtomicBoolean();
+        return () -> {
+            if (!running.compareAndSet(false, true)) {
+                log.debug("Skipping scheduled task {}, its previous run is still in progress", task);
+                return;
+            }
+            try {
+                executor.execute(BulkheadTaskExecutor.SCHEDULED_CATEGORY, () -> {
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        log.error("Unexpected error occurred in scheduled task", e);
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+                throw e;
+            }
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.polykhel.ssa.async;
+
+/**
+ * What the async task executor does with a task once its pool and queue are full, see
+ * {@code core.async.rejection-policy}.
+ */
+public enum RejectionPolicy {
+    ABORT, CALLER_RUNS, DISCARD, DISCARD_OLDEST, BLOCK
+}
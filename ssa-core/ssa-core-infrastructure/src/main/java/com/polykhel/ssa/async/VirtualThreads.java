@@ -0,0 +1,38 @@
+package com.polykhel.ssa.async;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates thread-per-task executors backed by virtual threads.
+ * <p>
+ * The project is compiled for Java 11, so the Java 21 API is looked up reflectively. There is no
+ * fallback to platform threads: one platform thread per task would only trade the bounded pools of
+ * the other modes for an unbounded number of threads.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param threadNamePrefix the prefix of the name of the virtual threads.
+     * @return an executor starting a new virtual thread for every task.
+     * @throws IllegalStateException if the running JVM does not provide virtual threads.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("core.async.mode=virtual requires Java 21 or later, running on Java "
+                + System.getProperty("java.version") + "; use the standard or adaptive mode instead", e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.polykhel.ssa.config;
 
+import com.polykhel.ssa.async.AsyncMode;
+import com.polykhel.ssa.async.RejectionPolicy;
 import com.polykhel.ssa.utils.constants.PropertyDefaults;
 import lombok.Getter;
 import lombok.Setter;
@@ -55,6 +57,8 @@ public class CoreProperties {
 
     private final AuditEvents auditEvents = new AuditEvents();
 
+    private final Liquibase liquibase = new Liquibase();
+
     @Getter
     @Setter
     public static class Async {
@@ -63,6 +67,33 @@ public class CoreProperties {
         private int maxPoolSize = PropertyDefaults.Async.maxPoolSize;
 
         private int queueCapacity = PropertyDefaults.Async.queueCapacity;
+
+        private int keepAliveSeconds = PropertyDefaults.Async.keepAliveSeconds;
+
+        /**
+         * {@code standard} only adds threads once the queue is full, {@code adaptive} adds them as
+         * soon as queued tasks wait longer than {@code queueWaitThresholdInMillis}, {@code virtual}
+         * runs every task, scheduled jobs included, on its own virtual thread, within the
+         * {@code bulkheads} limits, and requires Java 21.
+         */
+        private AsyncMode mode = PropertyDefaults.Async.mode;
+
+        private long queueWaitThresholdInMillis = PropertyDefaults.Async.queueWaitThresholdInMillis;
+
+        private RejectionPolicy rejectionPolicy = PropertyDefaults.Async.rejectionPolicy;
+
+        /**
+         * How long the {@code block} rejection policy waits for room in the queue.
+         */
+        private long blockTimeoutInMillis = PropertyDefaults.Async.blockTimeoutInMillis;
+
+        /**
+         * Maximum number of concurrent tasks per category in {@code virtual} mode: {@code default},
+         * {@code scheduled}, {@code liquibase}, {@code token} or {@code config-refresh}. Other
+         * categories are limited to {@code maxPoolSize}. Up to {@code queueCapacity} tasks of a
+         * category wait for a permit.
+         */
+        private Map<String, Integer> bulkheads = PropertyDefaults.Async.bulkheads;
     }
 
     @Getter
@@ -156,6 +187,19 @@ public class CoreProperties {
 
                 private long tokenValidityInSecondsForRememberMe =
                     PropertyDefaults.Security.Authentication.Jwt.tokenValidityInSecondsForRememberMe;
+
+                private final Cache cache = new Cache();
+
+                @Getter
+                @Setter
+                public static class Cache {
+                    private boolean enabled = PropertyDefaults.Security.Authentication.Jwt.Cache.enabled;
+
+                    private int maxEntries = PropertyDefaults.Security.Authentication.Jwt.Cache.maxEntries;
+
+                    private long timeToLiveInSeconds =
+                        PropertyDefaults.Security.Authentication.Jwt.Cache.timeToLiveInSeconds;
+                }
             }
         }
 
@@ -208,6 +252,10 @@ public class CoreProperties {
     public static class Metrics {
         private final Logs logs = new Logs();
 
+        private final Endpoint endpoint = new Endpoint();
+
+        private final HttpHistogram httpHistogram = new HttpHistogram();
+
         @Getter
         @Setter
         public static class Logs {
@@ -215,6 +263,40 @@ public class CoreProperties {
 
             private long reportFrequency = PropertyDefaults.Metrics.Logs.reportFrequency;
         }
+
+        @Getter
+        @Setter
+        public static class Endpoint {
+            private long snapshotTimeToLiveInMillis =
+                PropertyDefaults.Metrics.Endpoint.snapshotTimeToLiveInMillis;
+        }
+
+        @Getter
+        @Setter
+        public static class HttpHistogram {
+            private boolean enabled = PropertyDefaults.Metrics.HttpHistogram.enabled;
+
+            private List<String> uriPatterns = PropertyDefaults.Metrics.HttpHistogram.uriPatterns;
+
+            private double[] percentiles = PropertyDefaults.Metrics.HttpHistogram.percentiles;
+
+            private int percentilePrecision = PropertyDefaults.Metrics.HttpHistogram.percentilePrecision;
+
+            private boolean percentileHistogram = PropertyDefaults.Metrics.HttpHistogram.percentileHistogram;
+
+            private long[] serviceLevelObjectivesInMillis =
+                PropertyDefaults.Metrics.HttpHistogram.serviceLevelObjectivesInMillis;
+
+            private long minimumExpectedValueInMillis =
+                PropertyDefaults.Metrics.HttpHistogram.minimumExpectedValueInMillis;
+
+            private long maximumExpectedValueInMillis =
+                PropertyDefaults.Metrics.HttpHistogram.maximumExpectedValueInMillis;
+
+            private long expiryInSeconds = PropertyDefaults.Metrics.HttpHistogram.expiryInSeconds;
+
+            private int bufferLength = PropertyDefaults.Metrics.HttpHistogram.bufferLength;
+        }
     }
 
     @Getter
@@ -222,6 +304,8 @@ public class CoreProperties {
     public static class Logging {
 
         private final Logstash logstash = new Logstash();
+        private final Async async = new Async();
+        private final Aspect aspect = new Aspect();
         private boolean useJsonFormat = PropertyDefaults.Logging.useJsonFormat;
 
         @Getter
@@ -234,6 +318,82 @@ public class CoreProperties {
             private int port = PropertyDefaults.Logging.Logstash.port;
 
             private int queueSize = PropertyDefaults.Logging.Logstash.queueSize;
+
+            /**
+             * Ship the events in batches, spilling them to a local file instead of dropping them
+             * while Logstash is slow or unreachable.
+             */
+            private boolean buffered = PropertyDefaults.Logging.Logstash.buffered;
+
+            private int batchSize = PropertyDefaults.Logging.Logstash.batchSize;
+
+            /**
+             * Spill file, locked while in use: give each process its own path, as spilling is
+             * disabled when another process holds the file.
+             */
+            private String spillPath = PropertyDefaults.Logging.Logstash.spillPath;
+
+            /**
+             * Size of the spill file, at most 2047 MB as it is mapped in a single buffer.
+             */
+            private int spillMaxSizeInMb = PropertyDefaults.Logging.Logstash.spillMaxSizeInMb;
+
+            private long reconnectDelayInMillis = PropertyDefaults.Logging.Logstash.reconnectDelayInMillis;
+
+            public void setSpillMaxSizeInMb(int spillMaxSizeInMb) {
+                if (spillMaxSizeInMb <= 0 || spillMaxSizeInMb > 2047) {
+                    throw new IllegalArgumentException(
+                        "core.logging.logstash.spill-max-size-in-mb must be between 1 and 2047");
+                }
+                this.spillMaxSizeInMb = spillMaxSizeInMb;
+            }
+        }
+
+        /**
+         * Encoding and writing of the JSON console logs on a background thread.
+         */
+        @Getter
+        @Setter
+        public static class Async {
+            private boolean enabled = PropertyDefaults.Logging.Async.enabled;
+
+            private int queueSize = PropertyDefaults.Logging.Async.queueSize;
+
+            private int batchSize = PropertyDefaults.Logging.Async.batchSize;
+
+            /**
+             * Events at or below this level are dropped once the queue is nearly full.
+             */
+            private String dropLevel = PropertyDefaults.Logging.Async.dropLevel;
+
+            /**
+             * Percentage of the queue kept free for the events above {@code dropLevel}.
+             */
+            private int discardingThreshold = PropertyDefaults.Logging.Async.discardingThreshold;
+
+            /**
+             * How long the events above {@code dropLevel} wait for room in a full queue before
+             * being dropped: {@code -1} waits until they are queued, like Logback's
+             * {@code AsyncAppender}, {@code 0} drops them straight away.
+             */
+            private long maxBlockMillis = PropertyDefaults.Logging.Async.maxBlockMillis;
+        }
+
+        /**
+         * Method logging of the repositories, services and REST controllers.
+         */
+        @Getter
+        @Setter
+        public static class Aspect {
+            /**
+             * Time every call and only log a sample of them, in any profile, instead of logging
+             * every call in the {@code dev} profile.
+             */
+            private boolean samplingEnabled = PropertyDefaults.Logging.Aspect.samplingEnabled;
+
+            private double sampleRate = PropertyDefaults.Logging.Aspect.sampleRate;
+
+            private long slowThresholdInMillis = PropertyDefaults.Logging.Aspect.slowThresholdInMillis;
         }
     }
 
@@ -259,13 +419,49 @@ public class CoreProperties {
             private long limit = PropertyDefaults.Gateway.RateLimiting.limit;
 
             private int durationInSeconds = PropertyDefaults.Gateway.RateLimiting.durationInSeconds;
+
+            public void setLimit(long limit) {
+                if (limit <= 0) {
+                    throw new IllegalArgumentException("core.gateway.rate-limiting.limit must be positive");
+                }
+                this.limit = limit;
+            }
+
+            public void setDurationInSeconds(int durationInSeconds) {
+                if (durationInSeconds <= 0) {
+                    throw new IllegalArgumentException(
+                        "core.gateway.rate-limiting.duration-in-seconds must be positive");
+                }
+                this.durationInSeconds = durationInSeconds;
+            }
         }
     }
 
     @Getter
     @Setter
     public static class Registry {
+        private final Events events = new Events();
+
         private String password = PropertyDefaults.Registry.password;
+
+        /**
+         * Stream of the registry and route changes, at {@code /api/registry/events}.
+         */
+        @Getter
+        @Setter
+        public static class Events {
+            /**
+             * Events waiting to be sent to a subscriber, which is disconnected once they are full.
+             */
+            private int bufferSize = PropertyDefaults.Registry.Events.bufferSize;
+
+            private long timeoutInMillis = PropertyDefaults.Registry.Events.timeoutInMillis;
+
+            /**
+             * Number of events kept in memory for {@code /api/registry/events/history}.
+             */
+            private int historySize = PropertyDefaults.Registry.Events.historySize;
+        }
     }
 
     @Getter
@@ -279,4 +475,23 @@ public class CoreProperties {
     public static class AuditEvents {
         private int retentionPeriod = PropertyDefaults.AuditEvents.retentionPeriod;
     }
+
+    @Getter
+    @Setter
+    public static class Liquibase {
+        /**
+         * Run the migrations in the background in any profile, and report them through the
+         * {@code liquibaseMigration} health indicator, not only in the {@code dev} and {@code heroku}
+         * profiles.
+         */
+        private boolean asyncStart = PropertyDefaults.Liquibase.asyncStart;
+
+        /**
+         * Skip Liquibase when the changelog files are the same as on the last successful migration.
+         * Only safe for changelogs without {@code runAlways} or {@code runOnChange} change sets, nor
+         * preconditions that are meant to be checked again on every start, e.g. with
+         * {@code onFail="CONTINUE"}, as none of them run while Liquibase is skipped.
+         */
+        private boolean skipUnchanged = PropertyDefaults.Liquibase.skipUnchanged;
+    }
 }
@@ -0,0 +1,68 @@
+package com.polykhel.ssa.config;
+
+import com.polykhel.ssa.utils.CursorPageable;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.SortHandlerMethodArgumentResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Resolves {@link CursorPageable} controller parameters from the {@code cursor}, {@code size} and
+ * {@code sort} query parameters, the latter two with the same defaults as Spring Data's
+ * {@link org.springframework.data.web.PageableHandlerMethodArgumentResolver}.
+ */
+public class CursorPageableArgumentResolver implements HandlerMethodArgumentResolver {
+
+    /**
+     * Constant <code>DEFAULT_SIZE=20</code>
+     */
+    public static final int DEFAULT_SIZE = 20;
+    /**
+     * Constant <code>MAX_SIZE=2000</code>
+     */
+    public static final int MAX_SIZE = 2000;
+
+    private static final String SIZE_PARAMETER = "size";
+
+    private final SortHandlerMethodArgumentResolver sortResolver = new SortHandlerMethodArgumentResolver();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return CursorPageable.class.equals(parameter.getParameterType());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CursorPageable resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                          NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Sort sort = sortResolver.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+        try {
+            String cursor = webRequest.getParameter(CursorPageable.CURSOR_PARAMETER);
+            return CursorPageable.of(cursor, parseSize(webRequest.getParameter(SIZE_PARAMETER)), sort);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
+
+    private static int parseSize(String size) {
+        if (size == null || size.isEmpty()) {
+            return DEFAULT_SIZE;
+        }
+        try {
+            int parsed = Integer.parseInt(size);
+            return parsed < 1 ? DEFAULT_SIZE : Math.min(parsed, MAX_SIZE);
+        } catch (NumberFormatException e) {
+            return DEFAULT_SIZE;
+        }
+    }
+}
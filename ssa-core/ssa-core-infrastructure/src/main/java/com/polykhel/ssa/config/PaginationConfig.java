@@ -0,0 +1,19 @@
+package com.polykhel.ssa.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Configure the resolution of {@link com.polykhel.ssa.utils.CursorPageable} controller parameters.
+ */
+@Configuration
+public class PaginationConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CursorPageableArgumentResolver());
+    }
+}
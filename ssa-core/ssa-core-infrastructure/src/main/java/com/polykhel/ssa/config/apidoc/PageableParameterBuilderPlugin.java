@@ -2,6 +2,7 @@ package com.polykhel.ssa.config.apidoc;
 
 import com.fasterxml.classmate.ResolvedType;
 import com.fasterxml.classmate.TypeResolver;
+import com.polykhel.ssa.utils.CursorPageable;
 import org.springframework.data.domain.Pageable;
 import springfox.documentation.builders.ParameterBuilder;
 import springfox.documentation.schema.ModelReference;
@@ -22,7 +23,8 @@ import static springfox.documentation.schema.ResolvedTypes.modelRefFactory;
 import static springfox.documentation.spi.schema.contexts.ModelContext.inputParam;
 
 /**
- * The Springfox Plugin to resolve {@link org.springframework.data.domain.Pageable} parameter into plain fields.
+ * The Springfox Plugin to resolve {@link org.springframework.data.domain.Pageable} and
+ * {@link com.polykhel.ssa.utils.CursorPageable} parameters into plain fields.
  */
 public class PageableParameterBuilderPlugin implements OperationBuilderPlugin {
 
@@ -67,9 +69,20 @@ public class PageableParameterBuilderPlugin implements OperationBuilderPlugin {
         + "Default sort order is ascending. "
         + "Multiple sort criteria are supported.";
 
+    /**
+     * Constant <code>CURSOR_TYPE="query"</code>
+     */
+    public static final String CURSOR_TYPE = "query";
+    /**
+     * Constant <code>CURSOR_DESCRIPTION="Continuation token from the next link"{trunked}</code>
+     */
+    public static final String CURSOR_DESCRIPTION = "Continuation token from the next link of the previous slice. "
+        + "Omit it for the first slice.";
+
     private final TypeNameExtractor nameExtractor;
     private final TypeResolver resolver;
     private final ResolvedType pageableType;
+    private final ResolvedType cursorPageableType;
 
     /**
      * <p>Constructor for PageableParameterBuilderPlugin.</p>
@@ -81,6 +94,7 @@ public class PageableParameterBuilderPlugin implements OperationBuilderPlugin {
         this.nameExtractor = nameExtractor;
         this.resolver = resolver;
         this.pageableType = resolver.resolve(Pageable.class);
+        this.cursorPageableType = resolver.resolve(CursorPageable.class);
     }
 
     /**
@@ -100,14 +114,18 @@ public class PageableParameterBuilderPlugin implements OperationBuilderPlugin {
         for (ResolvedMethodParameter methodParameter : context.getParameters()) {
             ResolvedType resolvedType = methodParameter.getParameterType();
 
-            if (pageableType.equals(resolvedType)) {
+            if (pageableType.equals(resolvedType) || cursorPageableType.equals(resolvedType)) {
                 ParameterContext parameterContext = new ParameterContext(methodParameter,
                     new ParameterBuilder(),
                     context.getDocumentationContext(),
                     context.getGenericsNamingStrategy(),
                     context);
 
-                parameters.add(createPageParameter(parameterContext));
+                if (pageableType.equals(resolvedType)) {
+                    parameters.add(createPageParameter(parameterContext));
+                } else {
+                    parameters.add(createCursorParameter(parameterContext));
+                }
                 parameters.add(createSizeParameter(parameterContext));
                 parameters.add(createSortParameter(parameterContext));
 
@@ -163,6 +181,23 @@ public class PageableParameterBuilderPlugin implements OperationBuilderPlugin {
             .build();
     }
 
+    /**
+     * Create a cursor parameter.
+     * Override it if needed.
+     *
+     * @param context {@link com.polykhel.ssa.utils.CursorPageable} parameter context
+     * @return The cursor parameter
+     */
+    protected Parameter createCursorParameter(ParameterContext context) {
+        ModelReference stringModel = createModelRefFactory(context).apply(resolver.resolve(String.class));
+        return new ParameterBuilder()
+            .name(CursorPageable.CURSOR_PARAMETER)
+            .parameterType(CURSOR_TYPE)
+            .modelRef(stringModel)
+            .description(CURSOR_DESCRIPTION)
+            .build();
+    }
+
     /**
      * Create a size parameter.
      * Override it if needed. Set a default value for example.
@@ -3,6 +3,7 @@ package com.polykhel.ssa.config.apidoc;
 import com.polykhel.ssa.config.CoreProperties;
 import com.polykhel.ssa.config.apidoc.customizer.CustomSwaggerCustomizer;
 import com.polykhel.ssa.config.apidoc.customizer.SwaggerCustomizer;
+import com.polykhel.ssa.utils.CursorPageable;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.ObjectProvider;
@@ -139,7 +140,7 @@ public class SwaggerAutoConfig {
             .forCodeGeneration(true)
             .directModelSubstitute(ByteBuffer.class, String.class)
             .genericModelSubstitutes(ResponseEntity.class)
-            .ignoredParameterTypes(Pageable.class)
+            .ignoredParameterTypes(Pageable.class, CursorPageable.class)
             .select()
             .paths(regex(managementContextPath + ".*"))
             .build();
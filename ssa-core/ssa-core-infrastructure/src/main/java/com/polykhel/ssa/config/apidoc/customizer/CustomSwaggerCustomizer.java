@@ -1,6 +1,7 @@
 package com.polykhel.ssa.config.apidoc.customizer;
 
 import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.utils.CursorPageable;
 import org.springframework.core.Ordered;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -59,7 +60,7 @@ public class CustomSwaggerCustomizer implements SwaggerCustomizer, Ordered {
             .forCodeGeneration(true)
             .directModelSubstitute(ByteBuffer.class, String.class)
             .genericModelSubstitutes(ResponseEntity.class)
-            .ignoredParameterTypes(Pageable.class)
+            .ignoredParameterTypes(Pageable.class, CursorPageable.class)
             .select()
             .paths(regex(properties.getDefaultIncludePattern()))
             .build();
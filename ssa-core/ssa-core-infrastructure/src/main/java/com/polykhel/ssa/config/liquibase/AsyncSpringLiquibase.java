@@ -1,16 +1,37 @@
 package com.polykhel.ssa.config.liquibase;
 
+import com.polykhel.ssa.async.CategorizedTaskExecutor;
+import com.polykhel.ssa.utils.constants.PropertyDefaults;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import liquibase.Liquibase;
+import liquibase.changelog.ChangeSet;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.changelog.visitor.AbstractChangeExecListener;
+import liquibase.database.Database;
 import liquibase.exception.LiquibaseException;
+import liquibase.exception.LockException;
+import liquibase.lockservice.LockService;
+import liquibase.lockservice.LockServiceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.liquibase.DataSourceClosingSpringLiquibase;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StopWatch;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static com.polykhel.ssa.utils.constants.ProfileConstants.SPRING_PROFILE_DEVELOPMENT;
 import static com.polykhel.ssa.utils.constants.ProfileConstants.SPRING_PROFILE_HEROKU;
@@ -22,8 +43,16 @@ import static com.polykhel.ssa.utils.constants.ProfileConstants.SPRING_PROFILE_N
  * liquibase.integration.spring.SpringLiquibase starts Liquibase in the current thread: <ul> <li>This is needed if you
  * want to do some database requests at startup</li> <li>This ensure that the database is ready when the application
  * starts</li> </ul> But as this is a rather slow process, we use this asynchronous version to speed up our start-up time.
+ * <p>
+ * The asynchronous version can be enabled in any profile with {@code core.liquibase.async-start}, in which case the
+ * {@code liquibaseMigration} health indicator stays out of service until the migration is over, and should be part of
+ * the readiness group. With {@code core.liquibase.skip-unchanged}, Liquibase is not even started when the changelog
+ * files are the same as on the last successful migration, so it must not be enabled for changelogs relying on
+ * {@code runAlways}, {@code runOnChange} or preconditions checked on every start. The digest of the changelog is
+ * saved holding the {@code DATABASECHANGELOGLOCK} lock. The time spent in each change set is recorded as the
+ * {@code liquibase.changeset} timer.
  */
-public class AsyncSpringLiquibase extends DataSourceClosingSpringLiquibase {
+public class AsyncSpringLiquibase extends DataSourceClosingSpringLiquibase implements MeterBinder {
 
     /** Constant <code>DISABLED_MESSAGE="Liquibase is disabled"</code> */
     public static final String DISABLED_MESSAGE = "Liquibase is disabled";
@@ -42,6 +71,20 @@ public class AsyncSpringLiquibase extends DataSourceClosingSpringLiquibase {
     public static final long SLOWNESS_THRESHOLD = 5; // seconds
     /** Constant <code>SLOWNESS_MESSAGE="Warning, Liquibase took more than {} se"{trunked}</code> */
     public static final String SLOWNESS_MESSAGE = "Warning, Liquibase took more than {} seconds to start up!";
+    /** Constant <code>UNCHANGED_MESSAGE="Liquibase changelog is unchanged since"{trunked}</code> */
+    public static final String UNCHANGED_MESSAGE = "Liquibase changelog is unchanged since the last migration, " +
+        "skipping it";
+
+    /**
+     * Progress of the migration, reported by the {@code liquibaseMigration} health indicator.
+     */
+    public enum State {
+        PENDING, RUNNING, UP_TO_DATE, MIGRATED, FAILED, DISABLED;
+
+        public boolean isReady() {
+            return this == UP_TO_DATE || this == MIGRATED || this == DISABLED;
+        }
+    }
 
     // named "logger" because there is already a field called "log" in "SpringLiquibase"
     private final Logger logger = LoggerFactory.getLogger(AsyncSpringLiquibase.class);
@@ -50,28 +93,53 @@ public class AsyncSpringLiquibase extends DataSourceClosingSpringLiquibase {
 
     private final Environment env;
 
+    private final boolean asyncStart;
+
+    private final boolean skipUnchanged;
+
+    private boolean closeDataSourceOnceMigrated = true;
+
+    private volatile State state = State.PENDING;
+
+    private volatile Throwable failure;
+
+    private volatile long durationMillis;
+
+    private final List<ChangeSetTiming> timings = new ArrayList<>();
+
+    private MeterRegistry meterRegistry;
+
+    private ChangeLogDigest digests;
+
+    private String pendingDigest;
+
     public AsyncSpringLiquibase(Executor executor, Environment env) {
         this.executor = executor;
         this.env = env;
+        this.asyncStart = env.getProperty(
+            "core.liquibase.async-start", Boolean.class, PropertyDefaults.Liquibase.asyncStart);
+        this.skipUnchanged = env.getProperty(
+            "core.liquibase.skip-unchanged", Boolean.class, PropertyDefaults.Liquibase.skipUnchanged);
     }
 
     /** {@inheritDoc} */
     @Override
     public void afterPropertiesSet() throws LiquibaseException {
         if (!env.acceptsProfiles(Profiles.of(SPRING_PROFILE_NO_LIQUIBASE))) {
-            if (env.acceptsProfiles(Profiles.of(SPRING_PROFILE_DEVELOPMENT + "|" + SPRING_PROFILE_HEROKU))) {
+            if (asyncStart || env.acceptsProfiles(Profiles.of(SPRING_PROFILE_DEVELOPMENT + "|" + SPRING_PROFILE_HEROKU))) {
                 // Prevent Thread Lock with spring-cloud-context GenericScope
                 // https://github.com/spring-cloud/spring-cloud-commons/commit/aaa7288bae3bb4d6fdbef1041691223238d77b7b#diff-afa0715eafc2b0154475fe672dab70e4R328
                 try (Connection connection = getDataSource().getConnection()) {
-                    executor.execute(() -> {
+                    CategorizedTaskExecutor.execute(executor, CategorizedTaskExecutor.LIQUIBASE_CATEGORY, () -> {
                         try {
                             logger.warn(STARTING_ASYNC_MESSAGE);
                             initDb();
-                        } catch (LiquibaseException e) {
+                        } catch (LiquibaseException | RuntimeException e) {
                             logger.error(EXCEPTION_MESSAGE, e.getMessage(), e);
                         }
                     });
                 } catch (SQLException e) {
+                    fail(e);
                     logger.error(EXCEPTION_MESSAGE, e.getMessage(), e);
                 }
             } else {
@@ -79,18 +147,196 @@ public class AsyncSpringLiquibase extends DataSourceClosingSpringLiquibase {
                 initDb();
             }
         } else {
+            state = State.DISABLED;
             logger.debug(DISABLED_MESSAGE);
         }
     }
 
     protected void initDb() throws LiquibaseException {
+        state = State.RUNNING;
         StopWatch watch = new StopWatch();
         watch.start();
-        super.afterPropertiesSet();
-        watch.stop();
+        try {
+            if (isSkippable()) {
+                digests = new ChangeLogDigest(getDataSource(), getLiquibaseSchema());
+                String digest = digest();
+                if (digest != null && digest.equals(digests.read(getChangeLog()))) {
+                    logger.debug(UNCHANGED_MESSAGE);
+                    if (closeDataSourceOnceMigrated) {
+                        closeDataSource();
+                    }
+                    state = State.UP_TO_DATE;
+                    return;
+                }
+                pendingDigest = digest;
+            }
+            super.afterPropertiesSet();
+            state = State.MIGRATED;
+        } catch (LiquibaseException | RuntimeException e) {
+            fail(e);
+            throw e;
+        } finally {
+            watch.stop();
+            durationMillis = watch.getTotalTimeMillis();
+        }
         logger.debug(STARTED_MESSAGE, watch.getTotalTimeMillis());
         if (watch.getTotalTimeMillis() > SLOWNESS_THRESHOLD * 1000L) {
             logger.warn(SLOWNESS_MESSAGE, SLOWNESS_THRESHOLD);
         }
     }
+
+    /**
+     * Also save the digest of the applied changelog, holding the Liquibase lock so that it is not
+     * written while another instance is migrating the database.
+     */
+    @Override
+    protected void performUpdate(Liquibase liquibase) throws LiquibaseException {
+        super.performUpdate(liquibase);
+        if (pendingDigest != null) {
+            saveDigest(liquibase.getDatabase());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Liquibase createLiquibase(Connection c) throws LiquibaseException {
+        Liquibase liquibase = super.createLiquibase(c);
+        liquibase.setChangeExecListener(new TimingListener());
+        return liquibase;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCloseDataSourceOnceMigrated(boolean closeDataSourceOnceMigrated) {
+        super.setCloseDataSourceOnceMigrated(closeDataSourceOnceMigrated);
+        this.closeDataSourceOnceMigrated = closeDataSourceOnceMigrated;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        Gauge.builder("liquibase.migration.duration", this, liquibase -> liquibase.durationMillis)
+            .baseUnit("milliseconds")
+            .description("Time spent checking and migrating the database at startup")
+            .register(registry);
+        timings.forEach(timing -> timing.record(registry));
+        timings.clear();
+    }
+
+    private synchronized void record(ChangeSetTiming timing) {
+        if (meterRegistry != null) {
+            timing.record(meterRegistry);
+        } else {
+            timings.add(timing);
+        }
+    }
+
+    private void fail(Throwable e) {
+        failure = e;
+        state = State.FAILED;
+    }
+
+    /**
+     * Only plain updates can be skipped, rollbacks, drops and checksum resets always go through Liquibase.
+     */
+    private boolean isSkippable() {
+        return skipUnchanged && shouldRun && !isDropFirst() && !clearCheckSums && rollbackFile == null &&
+            !isTestRollbackOnUpdate();
+    }
+
+    private void saveDigest(Database database) {
+        LockService lockService = LockServiceFactory.getInstance().getLockService(database);
+        try {
+            lockService.waitForLock();
+            try {
+                digests.write(getChangeLog(), pendingDigest);
+            } finally {
+                lockService.releaseLock();
+            }
+        } catch (LockException | SQLException e) {
+            logger.warn("Could not save the digest of the Liquibase changelog: {}", e.getMessage());
+        } finally {
+            pendingDigest = null;
+        }
+    }
+
+    private String digest() {
+        String settings = getContexts() + "|" + getLabels() + "|" + getDefaultSchema() + "|" +
+            (parameters != null ? new TreeMap<>(parameters) : "");
+        try {
+            return ChangeLogDigest.compute(getResourceLoader(), getChangeLog(), settings);
+        } catch (IOException e) {
+            logger.warn("Could not compute the digest of the Liquibase changelog: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Same as {@link DataSourceClosingSpringLiquibase}, which only closes it after running Liquibase.
+     */
+    private void closeDataSource() {
+        Method closeMethod = ReflectionUtils.findMethod(getDataSource().getClass(), "close");
+        if (closeMethod != null) {
+            ReflectionUtils.invokeMethod(closeMethod, getDataSource());
+        }
+    }
+
+    /**
+     * Times the change sets, which Liquibase runs one at a time.
+     */
+    private class TimingListener extends AbstractChangeExecListener {
+
+        private long start;
+
+        @Override
+        public void willRun(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog, Database database,
+                            ChangeSet.RunStatus runStatus) {
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void ran(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog, Database database,
+                        ChangeSet.ExecType execType) {
+            record(new ChangeSetTiming(changeSet, execType.name(), System.nanoTime() - start));
+        }
+
+        @Override
+        public void runFailed(ChangeSet changeSet, DatabaseChangeLog databaseChangeLog, Database database,
+                              Exception exception) {
+            record(new ChangeSetTiming(changeSet, ChangeSet.ExecType.FAILED.name(), System.nanoTime() - start));
+        }
+    }
+
+    private static final class ChangeSetTiming {
+        private final String id;
+        private final String author;
+        private final String outcome;
+        private final long nanos;
+
+        private ChangeSetTiming(ChangeSet changeSet, String outcome, long nanos) {
+            this.id = changeSet.getId();
+            this.author = changeSet.getAuthor();
+            this.outcome = outcome;
+            this.nanos = nanos;
+        }
+
+        private void record(MeterRegistry registry) {
+            Timer.builder("liquibase.changeset")
+                .tag("changeset", id)
+                .tag("author", String.valueOf(author))
+                .tag("outcome", outcome)
+                .description("Time spent running the change set")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package com.polykhel.ssa.config.liquibase;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SHA-256 digest of a changelog, and of every file next to it or below, stored in a one-row-per
+ * changelog table once the changelog has been applied.
+ * <p>
+ * The files are keyed by their path relative to the changelog directory, so that the digest is the
+ * same whether the changelog is read from a directory or from a jar.
+ */
+class ChangeLogDigest {
+
+    static final String TABLE_NAME = "DATABASECHANGELOGDIGEST";
+
+    private final DataSource dataSource;
+
+    private final String tableName;
+
+    ChangeLogDigest(DataSource dataSource, String schema) {
+        this.dataSource = dataSource;
+        this.tableName = StringUtils.hasText(schema) ? schema + "." + TABLE_NAME : TABLE_NAME;
+    }
+
+    /**
+     * @param settings the other settings changing which change sets run, such as the contexts.
+     */
+    static String compute(ResourceLoader resourceLoader, String changeLog, String settings) throws IOException {
+        int separator = changeLog.lastIndexOf('/');
+        String directory = separator >= 0 ? changeLog.substring(0, separator + 1) : "";
+        if (directory.startsWith("classpath:")) {
+            directory = "classpath*:" + directory.substring("classpath:".length());
+        }
+        String base = StringUtils.cleanPath(directory.substring(directory.indexOf(':') + 1));
+        Map<String, Resource> files = new TreeMap<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(resourceLoader);
+        for (Resource resource : resolver.getResources(directory + "**/*")) {
+            if (resource.isReadable()) {
+                String path = resource.getURL().toString();
+                int start = base.isEmpty() ? -1 : path.lastIndexOf(base);
+                files.put(start >= 0 ? path.substring(start + base.length()) : path, resource);
+            }
+        }
+        if (files.isEmpty()) {
+            files.put(changeLog, resourceLoader.getResource(changeLog));
+        }
+        MessageDigest digest = sha256();
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        byte[] buffer = new byte[8192];
+        for (Map.Entry<String, Resource> file : files.entrySet()) {
+            digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+            try (InputStream input = file.getValue().getInputStream()) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return the digest of the changelog when it was last applied, or {@code null} if it never was
+     * or the table does not exist yet.
+     */
+    String read(String changeLog) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT DIGEST FROM " + tableName + " WHERE ID = ?")) {
+            statement.setString(1, changeLog);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    void write(String changeLog, String digest) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!tableExists(connection)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("CREATE TABLE " + tableName +
+                        " (ID VARCHAR(255) NOT NULL PRIMARY KEY, DIGEST VARCHAR(64) NOT NULL)");
+                }
+            }
+            int updated;
+            try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE " + tableName + " SET DIGEST = ? WHERE ID = ?")) {
+                statement.setString(1, digest);
+                statement.setString(2, changeLog);
+                updated = statement.executeUpdate();
+            }
+            if (updated == 0) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO " + tableName + " (ID, DIGEST) VALUES (?, ?)")) {
+                    statement.setString(1, changeLog);
+                    statement.setString(2, digest);
+                    statement.executeUpdate();
+                }
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private boolean tableExists(Connection connection) {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeQuery("SELECT COUNT(*) FROM " + tableName).close();
+            return true;
+        } catch (SQLException e) {
+            rollback(connection);
+            return false;
+        }
+    }
+
+    /**
+     * Some databases refuse any other statement in a transaction after a failed one.
+     */
+    private static void rollback(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            // the next statement fails too
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.polykhel.ssa.config.liquibase;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Health and metrics of the {@link AsyncSpringLiquibase} migration.
+ */
+@Configuration
+@ConditionalOnClass({SpringLiquibase.class, HealthIndicator.class})
+public class LiquibaseMigrationConfig {
+
+    @Bean
+    public LiquibaseMigrationHealthIndicator liquibaseMigrationHealthIndicator(
+        ObjectProvider<SpringLiquibase> liquibase) {
+        return new LiquibaseMigrationHealthIndicator(liquibase);
+    }
+
+    /**
+     * The Liquibase bean is usually declared as a plain {@link SpringLiquibase}, so it is not found
+     * as a {@link MeterBinder} before it has been created.
+     */
+    @Bean
+    public MeterBinder liquibaseMigrationMetrics(ObjectProvider<SpringLiquibase> liquibase) {
+        return registry -> liquibase.stream()
+            .filter(AsyncSpringLiquibase.class::isInstance)
+            .forEach(bean -> ((AsyncSpringLiquibase) bean).bindTo(registry));
+    }
+}
@@ -0,0 +1,39 @@
+package com.polykhel.ssa.config.liquibase;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * An {@link org.springframework.boot.actuate.health.HealthIndicator} that is out of service while the
+ * {@link AsyncSpringLiquibase} migration is pending or running, and down if it failed.
+ * <p>
+ * Add {@code liquibaseMigration} to {@code management.endpoint.health.group.readiness.include} so that
+ * no traffic is routed to the application before the database is ready.
+ */
+public class LiquibaseMigrationHealthIndicator implements HealthIndicator {
+
+    private final ObjectProvider<SpringLiquibase> liquibase;
+
+    public LiquibaseMigrationHealthIndicator(ObjectProvider<SpringLiquibase> liquibase) {
+        this.liquibase = liquibase;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Health health() {
+        SpringLiquibase bean = liquibase.getIfUnique();
+        if (!(bean instanceof AsyncSpringLiquibase)) {
+            return Health.up().build();
+        }
+        AsyncSpringLiquibase asyncLiquibase = (AsyncSpringLiquibase) bean;
+        AsyncSpringLiquibase.State state = asyncLiquibase.getState();
+        if (state == AsyncSpringLiquibase.State.FAILED) {
+            return Health.down(asyncLiquibase.getFailure()).withDetail("state", state).build();
+        }
+        return (state.isReady() ? Health.up() : Health.outOfService()).withDetail("state", state).build();
+    }
+}
@@ -0,0 +1,274 @@
+package com.polykhel.ssa.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender encoding and writing the events on a background thread, in batches.
+ * <p>
+ * Logging threads only prepare the event and publish it in a bounded lock-free ring buffer. A
+ * single writer thread drains up to {@code batchSize} events at once, encodes them into a reused
+ * buffer, and writes and flushes the buffer once per batch.
+ * <p>
+ * Once less than {@code discardingThreshold} percent of the buffer is free, the events at or below
+ * {@code dropLevel} are dropped. When the buffer is full, the other events wait for room like with
+ * Logback's {@code AsyncAppender}, or only up to {@code maxBlockMillis} when it is positive, and
+ * are dropped straight away when it is {@code 0}. Dropped events are counted per level.
+ */
+public class AsyncBatchingAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
+    private Encoder<ILoggingEvent> encoder;
+
+    private OutputStream outputStream = System.out;
+
+    private int queueSize = 8192;
+
+    private int batchSize = 256;
+
+    private Level dropLevel = Level.INFO;
+
+    private int discardingThreshold = 20;
+
+    private long maxBlockMillis = -1;
+
+    private final LongAdder[] dropped = new LongAdder[Level.ERROR_INT / Level.DEBUG_INT + 1];
+
+    private final LongAdder written = new LongAdder();
+
+    private ILoggingEvent[] events;
+
+    private AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile long head;
+
+    private int mask;
+
+    private int discardingCapacity;
+
+    private volatile boolean sleeping;
+
+    private volatile Thread worker;
+
+    public AsyncBatchingAppender() {
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (encoder == null) {
+            addError("No encoder set for the appender named [" + name + "].");
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, queueSize - 1)) << 1;
+        this.events = new ILoggingEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.discardingCapacity = capacity - capacity * discardingThreshold / 100;
+        Thread thread = new Thread(this::drain, "AsyncLogWriter-" + name);
+        thread.setDaemon(true);
+        this.worker = thread;
+        super.start();
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        Thread thread = worker;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        event.prepareForDeferredProcessing();
+        boolean droppable = event.getLevel().toInt() <= dropLevel.toInt();
+        if (droppable && getQueueSize() >= discardingCapacity) {
+            drop(event);
+            return;
+        }
+        if (!offer(event) && (droppable || !offerWithin(event, maxBlockMillis))) {
+            drop(event);
+            return;
+        }
+        if (sleeping) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be written.
+     */
+    public int getQueueSize() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return events != null ? events.length : queueSize;
+    }
+
+    public long getDroppedCount(Level level) {
+        return dropped[level.toInt() / Level.DEBUG_INT].sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    public void setOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setDropLevel(Level dropLevel) {
+        this.dropLevel = dropLevel;
+    }
+
+    public void setDiscardingThreshold(int discardingThreshold) {
+        this.discardingThreshold = discardingThreshold;
+    }
+
+    public void setMaxBlockMillis(long maxBlockMillis) {
+        this.maxBlockMillis = maxBlockMillis;
+    }
+
+    private void drop(ILoggingEvent event) {
+        dropped[event.getLevel().toInt() / Level.DEBUG_INT].increment();
+    }
+
+    /**
+     * Multi-producer publication: a slot is claimed by moving the tail, and released to the writer
+     * by setting its sequence.
+     */
+    private boolean offer(ILoggingEvent event) {
+        long position = tail.get();
+        for (; ; ) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events[index] = event;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @param timeoutMillis how long to wait for room, forever when negative.
+     */
+    private boolean offerWithin(ILoggingEvent event, long timeoutMillis) {
+        if (timeoutMillis == 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        do {
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            if (offer(event)) {
+                return true;
+            }
+        } while ((timeoutMillis < 0 || System.nanoTime() < deadline) && isStarted());
+        return false;
+    }
+
+    /**
+     * Single consumer: only the writer thread reads the slots and moves the head.
+     */
+    private ILoggingEvent poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        ILoggingEvent event = events[index];
+        events[index] = null;
+        sequences.lazySet(index, position + events.length);
+        head = position + 1;
+        return event;
+    }
+
+    private void drain() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        while (isStarted() || getQueueSize() > 0) {
+            int count = 0;
+            ILoggingEvent event;
+            while (count < batchSize && (event = poll()) != null) {
+                try {
+                    buffer.write(encoder.encode(event));
+                } catch (IOException | RuntimeException e) {
+                    addError("Failed to encode the logging event", e);
+                }
+                count++;
+            }
+            if (count > 0) {
+                write(buffer);
+                written.add(count);
+                if (buffer.size() > MAX_REUSED_BUFFER_SIZE) {
+                    buffer = new ByteArrayOutputStream(8192);
+                } else {
+                    buffer.reset();
+                }
+                continue;
+            }
+            sleeping = true;
+            if (getQueueSize() == 0 && isStarted()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            sleeping = false;
+        }
+    }
+
+    private void write(ByteArrayOutputStream buffer) {
+        try {
+            buffer.writeTo(outputStream);
+            outputStream.flush();
+        } catch (IOException e) {
+            addError("Failed to write logging events", e);
+        }
+    }
+}
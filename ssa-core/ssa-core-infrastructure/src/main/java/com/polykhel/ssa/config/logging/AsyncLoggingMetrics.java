@@ -0,0 +1,66 @@
+package com.polykhel.ssa.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Queue occupancy, written and dropped events of the {@link AsyncBatchingAppender} console
+ * appender.
+ * <p>
+ * The appenders are looked up on each read, as they are replaced when the logger context is reset.
+ */
+public class AsyncLoggingMetrics implements MeterBinder {
+
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+    private final LoggerContext context;
+
+    public AsyncLoggingMetrics(LoggerContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String appenderName = LoggingUtils.CONSOLE_APPENDER_NAME;
+        Gauge.builder(
+            "logging.async.queue.size", this, m -> m.read(AsyncBatchingAppender::getQueueSize))
+            .tag("appender", appenderName)
+            .description("Events waiting to be written")
+            .register(registry);
+        Gauge.builder(
+            "logging.async.queue.capacity", this, m -> m.read(AsyncBatchingAppender::getCapacity))
+            .tag("appender", appenderName)
+            .description("Maximum number of events waiting to be written")
+            .register(registry);
+        FunctionCounter.builder(
+            "logging.async.written", this, m -> m.read(AsyncBatchingAppender::getWrittenCount))
+            .tag("appender", appenderName)
+            .description("Events written")
+            .register(registry);
+        for (Level level : LEVELS) {
+            FunctionCounter.builder(
+                "logging.async.dropped", this, m -> m.read(appender -> appender.getDroppedCount(level)))
+                .tag("appender", appenderName)
+                .tag("level", level.toString())
+                .description("Events dropped because the queue was full")
+                .register(registry);
+        }
+    }
+
+    private double read(ToDoubleFunction<AsyncBatchingAppender> function) {
+        return read(context, LoggingUtils.CONSOLE_APPENDER_NAME, AsyncBatchingAppender.class, function);
+    }
+
+    static <T> double read(
+        LoggerContext context, String appenderName, Class<T> type, ToDoubleFunction<T> function) {
+        Object appender = context.getLogger(Logger.ROOT_LOGGER_NAME).getAppender(appenderName);
+        return type.isInstance(appender) ? function.applyAsDouble(type.cast(appender)) : Double.NaN;
+    }
+}
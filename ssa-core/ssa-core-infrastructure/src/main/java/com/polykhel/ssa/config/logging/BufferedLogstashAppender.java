@@ -0,0 +1,428 @@
+package com.polykhel.ssa.config.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ships the events to a Logstash TCP input as batches of JSON lines, without losing them while
+ * Logstash is slow or unreachable.
+ * <p>
+ * Logging threads only queue the events in memory; they are encoded by the shipping thread. When
+ * the queue overflows, or a batch fails to be written, because Logstash is slow or unreachable, the
+ * shipping thread moves the events to a memory-mapped {@link SpillFile}. While the spill file holds
+ * events, the queued events are appended to it and only the spill file is shipped, so the events
+ * are always shipped in order. They are only dropped when the spill file is full too, or when the
+ * queue fills up while the shipping thread is blocked writing to Logstash.
+ * <p>
+ * The spill file is locked while the appender is started; if another appender or process holds it,
+ * spilling is disabled. A corrupted spill file is reset, losing the events it held.
+ */
+public class BufferedLogstashAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private static final int MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private static final long POLL_MILLIS = 100;
+
+    private Encoder<ILoggingEvent> encoder;
+
+    private String host = "localhost";
+
+    private int port = 5000;
+
+    private int queueSize = 512;
+
+    private int batchSize = 256;
+
+    private int maxBatchBytes = 64 * 1024;
+
+    private String spillPath = "target/logstash.spill";
+
+    private long spillMaxSizeInBytes = 16 * 1024 * 1024;
+
+    private long reconnectDelayMillis = 1_000;
+
+    private final LongAdder shipped = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private BlockingQueue<ILoggingEvent> queue;
+
+    private int overflowThreshold;
+
+    private volatile SpillFile spillFile;
+
+    private Socket socket;
+
+    private OutputStream outputStream;
+
+    private Thread shipper;
+
+    @Override
+    public void start() {
+        if (encoder == null) {
+            addError("No encoder set for the appender named [" + name + "].");
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.overflowThreshold = Math.max(1, queueSize * 3 / 4);
+        if (spillMaxSizeInBytes <= 0 || spillMaxSizeInBytes > SpillFile.MAX_SIZE_IN_BYTES) {
+            addError("The spill file size must be between 1 and " + SpillFile.MAX_SIZE_IN_BYTES +
+                " bytes, events will be dropped when the queue is full");
+        } else {
+            try {
+                this.spillFile = new SpillFile(Paths.get(spillPath), spillMaxSizeInBytes);
+            } catch (IOException e) {
+                addWarn("Cannot open the spill file " + spillPath +
+                    ", events will be dropped when the queue is full", e);
+            }
+        }
+        this.shipper = new Thread(this::ship, "LogstashShipper-" + name);
+        shipper.setDaemon(true);
+        super.start();
+        shipper.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        shipper.interrupt();
+        try {
+            shipper.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (shipper.isAlive()) {
+            addWarn("The shipping thread did not stop, the spill file " + spillPath + " is left open");
+            return;
+        }
+        disconnect();
+        SpillFile file = spillFile;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                addWarn("Failed to close the spill file " + spillPath, e);
+            }
+            spillFile = null;
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        event.prepareForDeferredProcessing();
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    public long getSpillSize() {
+        SpillFile file = spillFile;
+        return file != null ? file.size() : 0;
+    }
+
+    public long getShippedCount() {
+        return shipped.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setSpillPath(String spillPath) {
+        this.spillPath = spillPath;
+    }
+
+    public void setSpillMaxSizeInBytes(long spillMaxSizeInBytes) {
+        this.spillMaxSizeInBytes = spillMaxSizeInBytes;
+    }
+
+    public void setReconnectDelayMillis(long reconnectDelayMillis) {
+        this.reconnectDelayMillis = reconnectDelayMillis;
+    }
+
+    /**
+     * Shipping thread only: the spill file is only changed by this thread.
+     */
+    private void ship() {
+        Batch batch = new Batch(maxBatchBytes);
+        try {
+            ship(batch);
+        } finally {
+            if (!batch.fromSpillFile) {
+                batch.records.forEach(record -> spill(record, 1));
+            }
+            List<ILoggingEvent> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            remaining.forEach(this::spill);
+        }
+    }
+
+    private void ship(Batch batch) {
+        List<ILoggingEvent> events = new ArrayList<>(batchSize);
+        long delay = reconnectDelayMillis;
+        while (isStarted()) {
+            try {
+                spillOverflow();
+                if (batch.isEmpty() && !nextBatch(batch, events)) {
+                    continue;
+                }
+                connect();
+                batch.bytes.writeTo(outputStream);
+                outputStream.flush();
+                delay = reconnectDelayMillis;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                addWarn("Failed to ship logging events to " + host + ":" + port +
+                    ", retrying in " + delay + "ms", e);
+                disconnect();
+                spillFailedBatch(batch);
+                if (!awaitReconnect(delay)) {
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+                continue;
+            } catch (RuntimeException e) {
+                addError("Failed to ship logging events, the spill file " + spillPath + " is reset", e);
+                if (!batch.fromSpillFile) {
+                    dropped.add(batch.events);
+                }
+                batch.clear();
+                resetSpillFile();
+                continue;
+            }
+            if (batch.fromSpillFile) {
+                spillFile.commit();
+            }
+            shipped.add(batch.events);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Fill the batch from the spill file while it holds events, appending the queued events to it so
+     * that they are shipped after the older spilled ones, from the queue otherwise.
+     *
+     * @return {@code false} if there was nothing to ship.
+     */
+    private boolean nextBatch(Batch batch, List<ILoggingEvent> events) throws InterruptedException {
+        SpillFile file = spillFile;
+        if (file != null && !file.isEmpty()) {
+            spillQueue();
+            batch.events = file.peek(batch.bytes, maxBatchBytes);
+            batch.fromSpillFile = true;
+            return true;
+        }
+        ILoggingEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        events.add(first);
+        queue.drainTo(events, batchSize - 1);
+        for (ILoggingEvent event : events) {
+            try {
+                byte[] record = encode(event);
+                batch.bytes.write(record);
+                batch.records.add(record);
+                batch.events++;
+            } catch (IOException | RuntimeException e) {
+                dropped.increment();
+                addError("Failed to encode the logging event", e);
+            }
+        }
+        events.clear();
+        return !batch.isEmpty();
+    }
+
+    /**
+     * Move a batch of queued events that failed to be written to the empty spill file, so that the
+     * events queued meanwhile are spilled after it. The batch is kept in memory and resent first if
+     * the spill file already holds newer events, or if the batch does not fit.
+     */
+    private void spillFailedBatch(Batch batch) {
+        SpillFile file = spillFile;
+        if (batch.fromSpillFile || file == null || !file.isEmpty() ||
+            batch.bytes.size() + (long) batch.records.size() * Integer.BYTES > file.remaining()) {
+            return;
+        }
+        batch.records.forEach(record -> spill(record, 1));
+        batch.clear();
+    }
+
+    private void resetSpillFile() {
+        SpillFile file = spillFile;
+        if (file != null) {
+            file.reset();
+        }
+    }
+
+    /**
+     * Wait before reconnecting, while still moving the overflowing events to the spill file, or all
+     * the queued events once it holds events, as they are shipped after them anyway.
+     *
+     * @return {@code false} if the thread was interrupted.
+     */
+    private boolean awaitReconnect(long delayMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            SpillFile file = spillFile;
+            if (file != null && !file.isEmpty()) {
+                spillQueue();
+            } else {
+                spillOverflow();
+            }
+            try {
+                Thread.sleep(Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the queued events to the spill file once the queue is nearly full, so that the logging
+     * threads always find room in the queue.
+     */
+    private void spillOverflow() {
+        if (queue.size() >= overflowThreshold) {
+            spillQueue();
+        }
+    }
+
+    private void spillQueue() {
+        if (spillFile == null) {
+            return;
+        }
+        ILoggingEvent event;
+        while ((event = queue.poll()) != null) {
+            spill(event);
+        }
+    }
+
+    private void spill(ILoggingEvent event) {
+        byte[] bytes;
+        try {
+            bytes = encode(event);
+        } catch (RuntimeException e) {
+            dropped.increment();
+            addError("Failed to encode the logging event", e);
+            return;
+        }
+        spill(bytes, 1);
+    }
+
+    private void spill(byte[] bytes, int events) {
+        SpillFile file = spillFile;
+        if (file != null && file.append(bytes)) {
+            spilled.add(events);
+        } else {
+            dropped.add(events);
+        }
+    }
+
+    private byte[] encode(ILoggingEvent event) {
+        return encoder.encode(event);
+    }
+
+    private void connect() throws IOException {
+        if (socket != null && socket.isConnected() && !socket.isClosed()) {
+            return;
+        }
+        Socket newSocket = new Socket();
+        newSocket.setKeepAlive(true);
+        newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        this.socket = newSocket;
+        this.outputStream = newSocket.getOutputStream();
+        addInfo("Connected to Logstash at " + host + ":" + port);
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+            socket = null;
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Encoded events being shipped, kept until they have been written.
+     */
+    private static final class Batch {
+        private final ByteArrayOutputStream bytes;
+        private final List<byte[]> records = new ArrayList<>();
+        private int events;
+        private boolean fromSpillFile;
+
+        private Batch(int size) {
+            this.bytes = new ByteArrayOutputStream(size);
+        }
+
+        private boolean isEmpty() {
+            return bytes.size() == 0;
+        }
+
+        private void clear() {
+            bytes.reset();
+            records.clear();
+            events = 0;
+            fromSpillFile = false;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.polykhel.ssa.config.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Queued, spilled, shipped and dropped events of the {@link BufferedLogstashAppender}.
+ * <p>
+ * The appender is looked up on each read, as it is replaced when the logger context is reset.
+ */
+public class BufferedLogstashMetrics implements MeterBinder {
+
+    private final LoggerContext context;
+
+    public BufferedLogstashMetrics(LoggerContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String appenderName = LoggingUtils.ASYNC_LOGSTASH_APPENDER_NAME;
+        Gauge.builder(
+            "logging.logstash.queue.size", this, m -> m.read(BufferedLogstashAppender::getQueueSize))
+            .tag("appender", appenderName)
+            .description("Events waiting in memory to be shipped")
+            .register(registry);
+        Gauge.builder(
+            "logging.logstash.spill.size", this, m -> m.read(BufferedLogstashAppender::getSpillSize))
+            .tag("appender", appenderName)
+            .baseUnit("bytes")
+            .description("Encoded events waiting in the spill file to be shipped")
+            .register(registry);
+        FunctionCounter.builder(
+            "logging.logstash.shipped", this, m -> m.read(BufferedLogstashAppender::getShippedCount))
+            .tag("appender", appenderName)
+            .description("Events shipped to Logstash")
+            .register(registry);
+        FunctionCounter.builder(
+            "logging.logstash.spilled", this, m -> m.read(BufferedLogstashAppender::getSpilledCount))
+            .tag("appender", appenderName)
+            .description("Events written to the spill file")
+            .register(registry);
+        FunctionCounter.builder(
+            "logging.logstash.dropped", this, m -> m.read(BufferedLogstashAppender::getDroppedCount))
+            .tag("appender", appenderName)
+            .description("Events dropped because the queue and the spill file were full")
+            .register(registry);
+    }
+
+    private double read(ToDoubleFunction<BufferedLogstashAppender> function) {
+        return AsyncLoggingMetrics.read(
+            context, LoggingUtils.ASYNC_LOGSTASH_APPENDER_NAME, BufferedLogstashAppender.class, function);
+    }
+}
@@ -1,6 +1,8 @@
 package com.polykhel.ssa.config.logging;
 
+import com.polykhel.ssa.config.CoreProperties;
 import com.polykhel.ssa.utils.constants.ProfileConstants;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
@@ -13,7 +15,14 @@ public class LoggingAspectConfig {
 
     @Bean
     @Profile(ProfileConstants.SPRING_PROFILE_DEVELOPMENT)
+    @ConditionalOnProperty(name = "core.logging.aspect.sampling-enabled", havingValue = "false", matchIfMissing = true)
     public LoggingAspect loggingAspect(Environment env) {
         return new LoggingAspect(env);
     }
+
+    @Bean
+    @ConditionalOnProperty("core.logging.aspect.sampling-enabled")
+    public SamplingLoggingAspect samplingLoggingAspect(Environment env, CoreProperties properties) {
+        return new SamplingLoggingAspect(env, properties.getLogging().getAspect());
+    }
 }
@@ -6,6 +6,7 @@ import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.boolex.OnMarkerEvaluator;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.LoggerContextListener;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.filter.EvaluatorFilter;
@@ -32,7 +33,7 @@ public final class LoggingUtils {
 
     public static final String LOGSTASH_APPENDER_NAME = "LOGSTASH";
     public static final String ASYNC_LOGSTASH_APPENDER_NAME = "ASYNC_LOGSTASH";
-    private static final String CONSOLE_APPENDER_NAME = "CONSOLE";
+    static final String CONSOLE_APPENDER_NAME = "CONSOLE";
 
     public LoggingUtils() {
     }
@@ -46,20 +47,52 @@ public final class LoggingUtils {
      * Encoder</a>
      */
     public static void addJsonConsoleAppender(LoggerContext context, String customFields) {
+        addJsonConsoleAppender(context, customFields, new CoreProperties.Logging.Async());
+    }
+
+    /**
+     * Add JSON Console Appender, encoding and writing the logs on a background thread if enabled.
+     *
+     * @param context         a {@link LoggerContext} object.
+     * @param customFields    a {@link String} object.
+     * @param asyncProperties a {@link CoreProperties.Logging.Async} object.
+     * @see AsyncBatchingAppender
+     */
+    public static void addJsonConsoleAppender(
+        LoggerContext context, String customFields, CoreProperties.Logging.Async asyncProperties) {
         log.info("Initializing Console loggingProperties");
 
-        ConsoleAppender<ILoggingEvent> consoleAppender = new ConsoleAppender<>();
-        consoleAppender.setContext(context);
-        consoleAppender.setEncoder(compositeJsonEncoder(context, customFields));
-        consoleAppender.setName(CONSOLE_APPENDER_NAME);
-        consoleAppender.start();
+        Appender<ILoggingEvent> appender;
+        if (asyncProperties.isEnabled()) {
+            AsyncBatchingAppender asyncAppender = new AsyncBatchingAppender();
+            asyncAppender.setEncoder(compositeJsonEncoder(context, customFields));
+            asyncAppender.setQueueSize(asyncProperties.getQueueSize());
+            asyncAppender.setBatchSize(asyncProperties.getBatchSize());
+            asyncAppender.setDropLevel(Level.toLevel(asyncProperties.getDropLevel(), Level.INFO));
+            asyncAppender.setDiscardingThreshold(asyncProperties.getDiscardingThreshold());
+            asyncAppender.setMaxBlockMillis(asyncProperties.getMaxBlockMillis());
+            appender = asyncAppender;
+        } else {
+            ConsoleAppender<ILoggingEvent> consoleAppender = new ConsoleAppender<>();
+            consoleAppender.setEncoder(compositeJsonEncoder(context, customFields));
+            appender = consoleAppender;
+        }
+        appender.setContext(context);
+        appender.setName(CONSOLE_APPENDER_NAME);
+        appender.start();
 
-        context.getLogger(Logger.ROOT_LOGGER_NAME).detachAppender(CONSOLE_APPENDER_NAME);
-        context.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(consoleAppender);
+        Logger rootLogger = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        Appender<ILoggingEvent> previous = rootLogger.getAppender(CONSOLE_APPENDER_NAME);
+        rootLogger.detachAppender(CONSOLE_APPENDER_NAME);
+        if (previous != null) {
+            previous.stop();
+        }
+        rootLogger.addAppender(appender);
     }
 
     /**
-     * Add Logstash TCP Socket Appender.
+     * Add Logstash TCP Socket Appender, or a {@link BufferedLogstashAppender} if the
+     * {@code buffered} shipping is enabled.
      *
      * @param context            a {@link LoggerContext} object.
      * @param customFields       a {@link String} object.
@@ -73,6 +106,10 @@ public final class LoggingUtils {
         CoreProperties.Logging.Logstash logstashProperties) {
         log.info("Initializing Logstash loggingProperties");
 
+        if (logstashProperties.isBuffered()) {
+            addBufferedLogstashAppender(context, customFields, logstashProperties);
+            return;
+        }
         LogstashTcpSocketAppender logstashAppender = new LogstashTcpSocketAppender();
         logstashAppender.addDestinations(
             new InetSocketAddress(logstashProperties.getHost(), logstashProperties.getPort()));
@@ -85,6 +122,37 @@ public final class LoggingUtils {
         context.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(logstashAppender);
     }
 
+    private static void addBufferedLogstashAppender(
+        LoggerContext context,
+        String customFields,
+        CoreProperties.Logging.Logstash logstashProperties) {
+        LogstashEncoder encoder = logStashEncoder(customFields);
+        encoder.setContext(context);
+        encoder.start();
+
+        BufferedLogstashAppender logstashAppender = new BufferedLogstashAppender();
+        logstashAppender.setContext(context);
+        logstashAppender.setEncoder(encoder);
+        logstashAppender.setHost(logstashProperties.getHost());
+        logstashAppender.setPort(logstashProperties.getPort());
+        logstashAppender.setQueueSize(logstashProperties.getQueueSize());
+        logstashAppender.setBatchSize(logstashProperties.getBatchSize());
+        logstashAppender.setSpillPath(logstashProperties.getSpillPath());
+        logstashAppender.setSpillMaxSizeInBytes(logstashProperties.getSpillMaxSizeInMb() * 1024L * 1024L);
+        logstashAppender.setReconnectDelayMillis(logstashProperties.getReconnectDelayInMillis());
+        logstashAppender.setName(ASYNC_LOGSTASH_APPENDER_NAME);
+
+        // the previous appender releases the spill file before the new one locks it
+        Logger rootLogger = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        Appender<ILoggingEvent> previous = rootLogger.getAppender(ASYNC_LOGSTASH_APPENDER_NAME);
+        rootLogger.detachAppender(ASYNC_LOGSTASH_APPENDER_NAME);
+        if (previous != null) {
+            previous.stop();
+        }
+        logstashAppender.start();
+        rootLogger.addAppender(logstashAppender);
+    }
+
     /**
      * Add context listener.
      *
@@ -231,7 +299,7 @@ public final class LoggingUtils {
         @Override
         public void onStart(LoggerContext context) {
             if (this.loggingProperties.isUseJsonFormat()) {
-                addJsonConsoleAppender(context, customFields);
+                addJsonConsoleAppender(context, customFields, loggingProperties.getAsync());
             }
             if (this.loggingProperties.getLogstash().isEnabled()) {
                 addLogstashTcpSocketAppender(context, customFields, loggingProperties.getLogstash());
@@ -241,7 +309,7 @@ public final class LoggingUtils {
         @Override
         public void onReset(LoggerContext context) {
             if (this.loggingProperties.isUseJsonFormat()) {
-                addJsonConsoleAppender(context, customFields);
+                addJsonConsoleAppender(context, customFields, loggingProperties.getAsync());
             }
             if (this.loggingProperties.getLogstash().isEnabled()) {
                 addLogstashTcpSocketAppender(context, customFields, loggingProperties.getLogstash());
@@ -0,0 +1,253 @@
+package com.polykhel.ssa.config.logging;
+
+import com.polykhel.ssa.config.CoreProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.lang3.ObjectUtils;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.polykhel.ssa.utils.constants.ProfileConstants.SPRING_PROFILE_DEVELOPMENT;
+
+/**
+ * Production-friendly variant of the {@link LoggingAspect}.
+ * <p>
+ * Every call is timed into a per-method log2 histogram, which records without allocating. The
+ * arguments and result are only logged for a random sample of the calls, and for the calls slower
+ * than the threshold. Loggers and histograms are resolved once per method; the overloads of a method
+ * share them, as their meters are only tagged with the class and method names.
+ */
+@Aspect
+public class SamplingLoggingAspect implements MeterBinder {
+
+    private final Environment env;
+
+    private final double sampleRate;
+
+    private final long slowThresholdNanos;
+
+    private final Map<Method, MethodStats> methods = new ConcurrentHashMap<>();
+
+    private final Map<String, MethodStats> methodsByName = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    public SamplingLoggingAspect(Environment env, CoreProperties.Logging.Aspect properties) {
+        this.env = env;
+        this.sampleRate = properties.getSampleRate();
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(properties.getSlowThresholdInMillis());
+    }
+
+    /**
+     * Pointcut that matches all repositories, services and Web REST endpoints.
+     */
+    @Pointcut(
+        "within(@org.springframework.stereotype.Repository *)"
+            + " || within(@org.springframework.stereotype.Service *)"
+            + " || within(@org.springframework.web.bind.annotation.RestController *)")
+    public void springBeanPointcut() {
+        // the implementations are in the advices
+    }
+
+    /**
+     * Pointcut that matches all Spring beans in the application's main packages.
+     */
+    @Pointcut(
+        "within(com.polykhel.ssa.repository..*)"
+            + " || within(com.polykhel.ssa.service..*)"
+            + " || within(com.polykhel.ssa.web.rest..*)")
+    public void applicationPackagePointcut() {
+        // the implementations are in the advices
+    }
+
+    /**
+     * Advice that logs methods throwing exceptions.
+     *
+     * @param joinPoint join point for advice.
+     * @param e         exception
+     */
+    @AfterThrowing(pointcut = "applicationPackagePointcut() && springBeanPointcut()", throwing = "e")
+    public void logAfterThrowing(JoinPoint joinPoint, Throwable e) {
+        MethodStats stats = stats(joinPoint);
+        if (env.acceptsProfiles(Profiles.of(SPRING_PROFILE_DEVELOPMENT))) {
+            stats.log.error(
+                "Exception in {}() with cause = '{}' and exception = '{}'",
+                stats.name,
+                ObjectUtils.defaultIfNull(e.getCause(), "NULL"),
+                e.getMessage(),
+                e);
+        } else {
+            stats.log.error(
+                "Exception in {}() with cause = {}",
+                stats.name,
+                ObjectUtils.defaultIfNull(e.getCause(), "NULL"));
+        }
+    }
+
+    /**
+     * Advice that times every call, and logs the sampled and slow ones.
+     *
+     * @param joinPoint join point for advice.
+     * @return result.
+     * @throws Throwable throws {@link IllegalArgumentException}.
+     */
+    @Around("applicationPackagePointcut() && springBeanPointcut()")
+    public Object logAround(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodStats stats = stats(joinPoint);
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (IllegalArgumentException e) {
+            stats.log.error(
+                "Illegal argument: {} in {}()", Arrays.toString(joinPoint.getArgs()), stats.name);
+            throw e;
+        } finally {
+            long duration = System.nanoTime() - start;
+            stats.record(duration);
+            if (duration >= slowThresholdNanos) {
+                stats.log.warn(
+                    "Slow call: {}() took {} ms with argument[s] = {} and result = {}",
+                    stats.name,
+                    TimeUnit.NANOSECONDS.toMillis(duration),
+                    Arrays.toString(joinPoint.getArgs()),
+                    result);
+            } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate &&
+                stats.log.isInfoEnabled()) {
+                stats.log.info(
+                    "Sampled call: {}() took {} ms with argument[s] = {} and result = {}",
+                    stats.name,
+                    TimeUnit.NANOSECONDS.toMillis(duration),
+                    Arrays.toString(joinPoint.getArgs()),
+                    result);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        methodsByName.values().forEach(stats -> stats.bindTo(registry));
+    }
+
+    private MethodStats stats(JoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodStats stats = methods.get(method);
+        if (stats == null) {
+            String type = joinPoint.getSignature().getDeclaringTypeName();
+            stats = methods.computeIfAbsent(method, m -> methodsByName.computeIfAbsent(
+                type + '.' + m.getName(), key -> createStats(type, m.getName())));
+        }
+        return stats;
+    }
+
+    private MethodStats createStats(String type, String name) {
+        MethodStats created = new MethodStats(type, name);
+        MeterRegistry registry = this.meterRegistry;
+        if (registry != null) {
+            created.bindTo(registry);
+        }
+        return created;
+    }
+
+    /**
+     * Call count, total and maximum time, and a histogram with one bucket per power of two
+     * nanoseconds.
+     */
+    private static final class MethodStats {
+        private final Logger log;
+        private final String type;
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private MethodStats(String type, String name) {
+            this.log = LoggerFactory.getLogger(type);
+            this.type = type;
+            this.name = name;
+        }
+
+        private void record(long nanos) {
+            long value = Math.max(1, nanos);
+            buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            totalNanos.add(value);
+            long max = maxNanos.get();
+            while (value > max && !maxNanos.compareAndSet(max, value)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile.
+         */
+        private double percentileMillis(double percentile) {
+            long total = 0;
+            long[] counts = new long[Long.SIZE];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank && cumulative > 0) {
+                    return (double) (1L << Math.min(i + 1, 62)) / TimeUnit.MILLISECONDS.toNanos(1);
+                }
+            }
+            return 0;
+        }
+
+        private void bindTo(MeterRegistry registry) {
+            Tags tags = Tags.of("class", type, "method", name);
+            FunctionCounter.builder("method.calls", count, LongAdder::sum)
+                .tags(tags)
+                .description("Calls of the method")
+                .register(registry);
+            FunctionCounter.builder("method.time.total", totalNanos, adder -> adder.sum() / 1e6)
+                .tags(tags)
+                .baseUnit("milliseconds")
+                .description("Total time spent in the method")
+                .register(registry);
+            Gauge.builder("method.time.max", maxNanos, max -> max.get() / 1e6)
+                .tags(tags)
+                .baseUnit("milliseconds")
+                .description("Longest call of the method")
+                .register(registry);
+            for (double percentile : new double[]{0.5, 0.95, 0.99}) {
+                Gauge.builder("method.time.percentile", this, stats -> stats.percentileMillis(percentile))
+                    .tags(tags)
+                    .tag("percentile", String.valueOf(percentile))
+                    .baseUnit("milliseconds")
+                    .description("Upper bound of the power of two bucket holding the percentile")
+                    .register(registry);
+            }
+        }
+    }
+}
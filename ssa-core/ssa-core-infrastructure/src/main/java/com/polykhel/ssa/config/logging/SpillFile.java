@@ -0,0 +1,210 @@
+package com.polykhel.ssa.config.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Size-capped FIFO of encoded log events in a memory-mapped file.
+ * <p>
+ * The file starts with the read and write positions and the capacity, followed by a ring of
+ * length-prefixed records that wrap around at the end of the file, so the space of the shipped
+ * records is reused straight away. Both positions only grow and are persisted with every change, so
+ * the records left when the application stops are replayed on the next start. A file written with
+ * another capacity, or with inconsistent positions, is reset.
+ * <p>
+ * The file is locked exclusively while it is open, so that another appender or process cannot
+ * write to it. Only one thread may change the file; the size can be read from any thread.
+ */
+class SpillFile implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 3 * Long.BYTES;
+
+    /**
+     * Largest size of the records, as a single buffer maps at most 2 GB.
+     */
+    static final long MAX_SIZE_IN_BYTES = Integer.MAX_VALUE - HEADER_SIZE;
+
+    private final FileChannel channel;
+
+    private final FileLock lock;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    private volatile long readPosition;
+
+    private volatile long writePosition;
+
+    private long peekPosition;
+
+    /**
+     * @throws IOException if the file cannot be mapped, or is locked by another appender or process.
+     */
+    SpillFile(Path path, long maxSizeInBytes) throws IOException {
+        if (maxSizeInBytes <= 0 || maxSizeInBytes > MAX_SIZE_IN_BYTES) {
+            throw new IllegalArgumentException(
+                "The spill file size must be between 1 and " + MAX_SIZE_IN_BYTES + " bytes: " + maxSizeInBytes);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.capacity = (int) maxSizeInBytes;
+        this.channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.lock = lock(channel, path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + maxSizeInBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        long read = buffer.getLong(0);
+        long write = buffer.getLong(Long.BYTES);
+        if (buffer.getLong(2 * Long.BYTES) != capacity || read < 0 || write < read || write - read > capacity) {
+            read = 0;
+            write = 0;
+        }
+        this.readPosition = read;
+        this.writePosition = write;
+        this.peekPosition = read;
+        buffer.putLong(2 * Long.BYTES, capacity);
+        savePositions();
+    }
+
+    /**
+     * @return {@code false} if the record does not fit in the free space.
+     */
+    boolean append(byte[] record) {
+        long length = Integer.BYTES + (long) record.length;
+        if (length > capacity - size()) {
+            return false;
+        }
+        put(writePosition, ByteBuffer.allocate(Integer.BYTES).putInt(record.length).array());
+        put(writePosition + Integer.BYTES, record);
+        writePosition += length;
+        savePositions();
+        return true;
+    }
+
+    boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    long size() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * @return the number of bytes that can still be appended, including the length prefixes.
+     */
+    long remaining() {
+        return capacity - size();
+    }
+
+    /**
+     * Discard all the records, e.g. when a record is found to be corrupted.
+     */
+    void reset() {
+        readPosition = writePosition;
+        peekPosition = writePosition;
+        savePositions();
+    }
+
+    /**
+     * Copy the oldest records, up to {@code maxBytes} unless the first record is larger, without
+     * consuming them.
+     *
+     * @return the number of records copied, to {@link #commit()} once they have been shipped.
+     * @throws IllegalStateException if a record length does not fit in the records left, as the
+     *                               file is corrupted.
+     */
+    int peek(ByteArrayOutputStream output, int maxBytes) {
+        long position = readPosition;
+        int records = 0;
+        byte[] header = new byte[Integer.BYTES];
+        while (position < writePosition) {
+            get(position, header);
+            int length = ByteBuffer.wrap(header).getInt();
+            if (length < 0 || Integer.BYTES + (long) length > writePosition - position) {
+                throw new IllegalStateException("Corrupted spill file: record of " + length + " bytes at position " +
+                    position + ", " + (writePosition - position) + " bytes left");
+            }
+            if (records > 0 && output.size() + length > maxBytes) {
+                break;
+            }
+            byte[] record = new byte[length];
+            get(position + Integer.BYTES, record);
+            output.write(record, 0, length);
+            position += Integer.BYTES + length;
+            records++;
+        }
+        peekPosition = position;
+        return records;
+    }
+
+    /**
+     * Consume the records copied by the last {@link #peek(ByteArrayOutputStream, int)}, which frees
+     * their space.
+     */
+    void commit() {
+        readPosition = peekPosition;
+        savePositions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        lock.release();
+        channel.close();
+    }
+
+    private static FileLock lock(FileChannel channel, Path path) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException("The spill file " + path + " is locked by another appender or process");
+        }
+        return lock;
+    }
+
+    private void put(long position, byte[] bytes) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+        buffer.position(HEADER_SIZE + offset);
+        buffer.put(bytes, 0, first);
+        if (first < bytes.length) {
+            buffer.position(HEADER_SIZE);
+            buffer.put(bytes, first, bytes.length - first);
+        }
+    }
+
+    private void get(long position, byte[] bytes) {
+        int offset = (int) (position % capacity);
+        int first = Math.min(bytes.length, capacity - offset);
+        buffer.position(HEADER_SIZE + offset);
+        buffer.get(bytes, 0, first);
+        if (first < bytes.length) {
+            buffer.position(HEADER_SIZE);
+            buffer.get(bytes, first, bytes.length - first);
+        }
+    }
+
+    private void savePositions() {
+        buffer.putLong(0, readPosition);
+        buffer.putLong(Long.BYTES, writePosition);
+    }
+}
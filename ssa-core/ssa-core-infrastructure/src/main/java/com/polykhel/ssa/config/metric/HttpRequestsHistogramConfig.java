@@ -0,0 +1,24 @@
+package com.polykhel.ssa.config.metric;
+
+import com.polykhel.ssa.config.CoreProperties;
+import io.micrometer.core.instrument.config.MeterFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Opt-in latency distribution for {@code http.server.requests}, see
+ * {@link HttpRequestsHistogramMeterFilter}.
+ */
+@Configuration
+@ConditionalOnProperty("core.metrics.http-histogram.enabled")
+@Slf4j
+public class HttpRequestsHistogramConfig {
+
+    @Bean
+    public MeterFilter httpRequestsHistogramMeterFilter(CoreProperties coreProperties) {
+        log.debug("Enabling percentile histograms for http.server.requests");
+        return new HttpRequestsHistogramMeterFilter(coreProperties.getMetrics().getHttpHistogram());
+    }
+}
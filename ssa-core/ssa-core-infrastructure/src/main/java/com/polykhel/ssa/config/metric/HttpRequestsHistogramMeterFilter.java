@@ -0,0 +1,76 @@
+package com.polykhel.ssa.config.metric;
+
+import com.polykhel.ssa.config.CoreProperties;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables percentiles and SLO buckets on the {@code http.server.requests} timers whose {@code uri}
+ * tag matches one of the configured patterns.
+ * <p>
+ * Percentiles are computed from HdrHistogram ring buffers of {@code bufferLength} windows, at the
+ * configured precision. The percentile histogram uses Micrometer's fixed bucket boundaries,
+ * clipped to the expected value range, so it has a bounded size and can be merged across timers
+ * and instances.
+ */
+public class HttpRequestsHistogramMeterFilter implements MeterFilter {
+
+    public static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<String> uriPatterns;
+
+    private final DistributionStatisticConfig distributionStatisticConfig;
+
+    public HttpRequestsHistogramMeterFilter(CoreProperties.Metrics.HttpHistogram properties) {
+        this.uriPatterns = properties.getUriPatterns();
+        this.distributionStatisticConfig =
+            DistributionStatisticConfig.builder()
+                .percentiles(properties.getPercentiles())
+                .percentilePrecision(properties.getPercentilePrecision())
+                .percentilesHistogram(properties.isPercentileHistogram())
+                .serviceLevelObjectives(
+                    Arrays.stream(properties.getServiceLevelObjectivesInMillis())
+                        .mapToDouble(TimeUnit.MILLISECONDS::toNanos)
+                        .toArray())
+                .minimumExpectedValue(
+                    (double) TimeUnit.MILLISECONDS.toNanos(properties.getMinimumExpectedValueInMillis()))
+                .maximumExpectedValue(
+                    (double) TimeUnit.MILLISECONDS.toNanos(properties.getMaximumExpectedValueInMillis()))
+                .expiry(Duration.ofSeconds(properties.getExpiryInSeconds()))
+                .bufferLength(properties.getBufferLength())
+                .build();
+    }
+
+    @Override
+    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+        if (!HTTP_SERVER_REQUESTS.equals(id.getName()) || !matches(id.getTag("uri"))) {
+            return config;
+        }
+        return distributionStatisticConfig.merge(config);
+    }
+
+    private boolean matches(String uri) {
+        if (uriPatterns.isEmpty()) {
+            return true;
+        }
+        if (uri == null) {
+            return false;
+        }
+        for (String pattern : uriPatterns) {
+            if (pathMatcher.match(pattern, uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
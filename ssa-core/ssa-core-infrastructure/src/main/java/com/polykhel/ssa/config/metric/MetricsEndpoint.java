@@ -1,23 +1,30 @@
 package com.polykhel.ssa.config.metric;
 
+import com.polykhel.ssa.utils.constants.PropertyDefaults;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
 import io.micrometer.core.instrument.distribution.ValueAtPercentile;
-import io.micrometer.core.instrument.search.Search;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
 import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 @WebEndpoint(id = "metrics")
@@ -28,10 +35,55 @@ public class MetricsEndpoint {
      * Constant <code>MISSING_NAME_TAG_MESSAGE="Missing name tag for metric {}"</code>
      */
     public static final String MISSING_NAME_TAG_MESSAGE = "Missing name tag for metric {}";
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+    private static final Collection<String> CRUD_OPERATIONS = Arrays.asList("GET", "POST", "PUT", "DELETE");
     private final MeterRegistry meterRegistry;
+    private final long snapshotTimeToLiveInNanos;
+    private final double[] serviceLevelObjectivesInMillis;
+    private final List<MetricsSection> sections;
+    private volatile Snapshot snapshot;
 
     public MetricsEndpoint(MeterRegistry meterRegistry) {
+        this(meterRegistry, Duration.ofMillis(PropertyDefaults.Metrics.Endpoint.snapshotTimeToLiveInMillis));
+    }
+
+    /**
+     * @param meterRegistry      a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param snapshotTimeToLive how long computed metrics are reused, {@link Duration#ZERO} to
+     *                           compute them on every call.
+     */
+    public MetricsEndpoint(MeterRegistry meterRegistry, Duration snapshotTimeToLive) {
+        this(meterRegistry, snapshotTimeToLive, new long[0]);
+    }
+
+    /**
+     * @param meterRegistry                  a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param snapshotTimeToLive             how long computed metrics are reused, {@link Duration#ZERO}
+     *                                       to compute them on every call.
+     * @param serviceLevelObjectivesInMillis the SLO boundaries of {@code http.server.requests} whose
+     *                                       bucket counts are reported.
+     */
+    public MetricsEndpoint(
+        MeterRegistry meterRegistry, Duration snapshotTimeToLive, long[] serviceLevelObjectivesInMillis) {
+        this(meterRegistry, snapshotTimeToLive, serviceLevelObjectivesInMillis, Collections.emptyList());
+    }
+
+    /**
+     * @param meterRegistry                  a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param snapshotTimeToLive             how long computed metrics are reused, {@link Duration#ZERO}
+     *                                       to compute them on every call.
+     * @param serviceLevelObjectivesInMillis the SLO boundaries of {@code http.server.requests} whose
+     *                                       bucket counts are reported.
+     * @param sections                       the categories contributed by the application.
+     */
+    public MetricsEndpoint(
+        MeterRegistry meterRegistry, Duration snapshotTimeToLive, long[] serviceLevelObjectivesInMillis,
+        List<MetricsSection> sections) {
         this.meterRegistry = meterRegistry;
+        this.sections = new ArrayList<>(sections);
+        this.snapshotTimeToLiveInNanos = snapshotTimeToLive.toNanos();
+        this.serviceLevelObjectivesInMillis =
+            Arrays.stream(serviceLevelObjectivesInMillis).asDoubleStream().toArray();
     }
 
     /**
@@ -44,242 +96,302 @@ public class MetricsEndpoint {
      */
     @ReadOperation
     public Map<String, Map<String, ?>> allMetrics() {
-        Map<String, Map<String, ?>> results = new HashMap<>();
-        // JVM stats
-        results.put("jvm", this.jvmMemoryMetrics());
-        // HTTP requests stats
-        results.put("http.server.requests", this.httpRequestsMetrics());
-        // Cache stats
-        results.put("cache", this.cacheMetrics());
-        // Service stats
-        results.put("services", this.serviceMetrics());
-        // Database stats
-        results.put("databases", this.databaseMetrics());
-        // Garbage collector
-        results.put("garbageCollector", this.garbageCollectorMetrics());
-        // Process stats
-        results.put("processMetrics", this.processMetrics());
-
-        return results;
+        Snapshot current = this.snapshot;
+        if (current != null && current.isFresh(snapshotTimeToLiveInNanos)) {
+            return current.metrics;
+        }
+        synchronized (this) {
+            current = this.snapshot;
+            if (current == null || !current.isFresh(snapshotTimeToLiveInNanos)) {
+                current = new Snapshot(
+                    new Aggregator(serviceLevelObjectivesInMillis, sections).aggregate(meterRegistry.getMeters()));
+                this.snapshot = current;
+            }
+            return current.metrics;
+        }
     }
 
-    private Map<String, Number> processMetrics() {
-        Map<String, Number> resultsProcess = new HashMap<>();
-
-        Collection<Gauge> gauges = Search.in(this.meterRegistry).name(s -> s.contains("cpu") || s.contains("system") || s.contains("process")).gauges();
-        gauges.forEach(gauge -> resultsProcess.put(gauge.getId().getName(), gauge.value()));
+    /**
+     * Immutable result of one aggregation, shared by the calls made within its time to live.
+     */
+    private static final class Snapshot {
+        private final Map<String, Map<String, ?>> metrics;
+        private final long takenAt = System.nanoTime();
 
-        Collection<TimeGauge> timeGauges = Search.in(this.meterRegistry).name(s -> s.contains("process")).timeGauges();
-        timeGauges.forEach(gauge -> resultsProcess.put(gauge.getId().getName(), gauge.value(TimeUnit.MILLISECONDS)));
+        private Snapshot(Map<String, Map<String, ?>> metrics) {
+            this.metrics = metrics;
+        }
 
-        return resultsProcess;
+        private boolean isFresh(long timeToLiveInNanos) {
+            return System.nanoTime() - takenAt < timeToLiveInNanos;
+        }
     }
 
-    private Map<String, Object> garbageCollectorMetrics() {
-        Map<String, Object> resultsGarbageCollector = new HashMap<>();
-
-        Collection<Timer> timers = Search.in(this.meterRegistry).name(s -> s.contains("jvm.gc.pause")).timers();
-        timers.forEach(timer -> {
-            String key = timer.getId().getName();
-
-            HashMap<String, Number> gcPauseResults = new HashMap<>();
-            gcPauseResults.put("count", timer.count());
-            gcPauseResults.put("max", timer.max(TimeUnit.MILLISECONDS));
-            gcPauseResults.put("totalTime", timer.totalTime(TimeUnit.MILLISECONDS));
-            gcPauseResults.put("mean", timer.mean(TimeUnit.MILLISECONDS));
-
-            ValueAtPercentile[] percentiles = timer.takeSnapshot().percentileValues();
-            for (ValueAtPercentile percentile : percentiles) {
-                gcPauseResults.put(String.valueOf(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS));
+    /**
+     * Buckets the meters of the registry by category in a single pass.
+     */
+    private static final class Aggregator {
+        private final double[] serviceLevelObjectivesInMillis;
+        private final Map<String, Map<String, Number>> jvm = new HashMap<>();
+        private final Map<String, HttpStats> httpPerCode = new HashMap<>();
+        private final Map<String, Map<String, Number>> cache = new HashMap<>();
+        private final Map<String, Map<String, HttpStats>> services = new HashMap<>();
+        private final Map<String, Map<String, Number>> databases = new HashMap<>();
+        private final Map<String, Object> garbageCollector = new HashMap<>();
+        private final Map<String, Number> process = new HashMap<>();
+        private final Map<String, MetricsSection.Accumulator> sections = new LinkedHashMap<>();
+        private long httpCount;
+        private double classesLoaded;
+        private double classesUnloaded;
+
+        private Aggregator(double[] serviceLevelObjectivesInMillis, List<MetricsSection> sections) {
+            this.serviceLevelObjectivesInMillis = serviceLevelObjectivesInMillis;
+            for (MetricsSection section : sections) {
+                this.sections.put(section.getName(), section.newAccumulator());
             }
+        }
 
-            resultsGarbageCollector.putIfAbsent(key, gcPauseResults);
-        });
-
-        Collection<Gauge> gauges = Search.in(this.meterRegistry).name(s -> s.contains("jvm.gc") && !s.contains("jvm.gc.pause")).gauges();
-        gauges.forEach(gauge -> resultsGarbageCollector.put(gauge.getId().getName(), gauge.value()));
-
-        Collection<Counter> counters = Search.in(this.meterRegistry).name(s -> s.contains("jvm.gc") && !s.contains("jvm.gc.pause")).counters();
-        counters.forEach(counter -> resultsGarbageCollector.put(counter.getId().getName(), counter.count()));
-
-        gauges = Search.in(this.meterRegistry).name(s -> s.contains("jvm.classes.loaded")).gauges();
-        Double classesLoaded = gauges.stream().map(Gauge::value).reduce(Double::sum).orElse((double) 0);
-        resultsGarbageCollector.put("classesLoaded", classesLoaded);
-
-        Collection<FunctionCounter> functionCounters = Search.in(this.meterRegistry).name(s -> s.contains("jvm.classes.unloaded")).functionCounters();
-        Double classesUnloaded = functionCounters.stream().map(FunctionCounter::count).reduce(Double::sum).orElse((double) 0);
-        resultsGarbageCollector.put("classesUnloaded", classesUnloaded);
-
-        return resultsGarbageCollector;
-    }
-
-    private Map<String, Map<String, Number>> databaseMetrics() {
-        Map<String, Map<String, Number>> resultsDatabase = new HashMap<>();
-
-        Collection<Timer> timers = Search.in(this.meterRegistry).name(s -> s.contains("hikari")).timers();
-        timers.forEach(timer -> {
-            String key = timer.getId().getName().substring(timer.getId().getName().lastIndexOf('.') + 1);
+        private Map<String, Map<String, ?>> aggregate(Collection<Meter> meters) {
+            for (Meter meter : meters) {
+                for (MetricsSection.Accumulator section : sections.values()) {
+                    section.add(meter);
+                }
+                String name = meter.getId().getName();
+                if (meter instanceof Gauge) {
+                    addGauge((Gauge) meter, name);
+                } else if (meter instanceof Timer) {
+                    addTimer((Timer) meter, name);
+                } else if (meter instanceof FunctionCounter) {
+                    addFunctionCounter((FunctionCounter) meter, name);
+                } else if (meter instanceof Counter) {
+                    addCounter((Counter) meter, name);
+                }
+            }
+            return toResults();
+        }
+
+        private void addGauge(Gauge gauge, String name) {
+            if (name.contains("jvm.memory.used")) {
+                jvmMemory(gauge).put("used", gauge.value());
+            } else if (name.contains("jvm.memory.max")) {
+                jvmMemory(gauge).put("max", gauge.value());
+            } else if (name.contains("jvm.memory.committed")) {
+                jvmMemory(gauge).put("committed", gauge.value());
+            }
+            if (name.contains("cache")) {
+                String cacheName = gauge.getId().getTag("name");
+                if (cacheName != null) {
+                    cache.computeIfAbsent(cacheName, k -> new HashMap<>()).put(name, gauge.value());
+                } else {
+                    log.warn(MISSING_NAME_TAG_MESSAGE, name);
+                }
+            }
+            if (name.contains("hikari")) {
+                databases.computeIfAbsent(lastSegment(name), k -> new HashMap<>()).put("value", gauge.value());
+            }
+            if (name.contains("jvm.gc") && !name.contains("jvm.gc.pause")) {
+                garbageCollector.put(name, gauge.value());
+            }
+            if (name.contains("jvm.classes.loaded")) {
+                classesLoaded += gauge.value();
+            }
+            if (gauge instanceof TimeGauge && name.contains("process")) {
+                process.put(name, ((TimeGauge) gauge).value(TimeUnit.MILLISECONDS));
+            } else if (name.contains("cpu") || name.contains("system") || name.contains("process")) {
+                process.put(name, gauge.value());
+            }
+        }
+
+        private void addTimer(Timer timer, String name) {
+            if (name.equals(HTTP_SERVER_REQUESTS)) {
+                HistogramSnapshot histogram = timer.takeSnapshot();
+                httpPerCode.computeIfAbsent(timer.getId().getTag("status"), k -> new HttpStats())
+                    .add(timer, histogram);
+                httpCount += timer.count();
+
+                Map<String, HttpStats> perUri =
+                    services.computeIfAbsent(timer.getId().getTag("uri"), k -> new HashMap<>());
+                String method = timer.getId().getTag("method");
+                if (CRUD_OPERATIONS.contains(method)) {
+                    perUri.computeIfAbsent(method, k -> new HttpStats()).add(timer, histogram);
+                }
+            }
+            if (name.contains("hikari")) {
+                databases.computeIfAbsent(lastSegment(name), k -> new HashMap<>()).putAll(timerStats(timer));
+            }
+            if (name.contains("jvm.gc.pause")) {
+                garbageCollector.putIfAbsent(name, timerStats(timer));
+            }
+        }
+
+        private void addFunctionCounter(FunctionCounter counter, String name) {
+            if (name.contains("cache") && !name.contains("hibernate")) {
+                String cacheName = counter.getId().getTag("name");
+                if (cacheName != null) {
+                    String key = name;
+                    if (counter.getId().getTag("result") != null) {
+                        key += "." + counter.getId().getTag("result");
+                    }
+                    cache.computeIfAbsent(cacheName, k -> new HashMap<>()).put(key, counter.count());
+                } else {
+                    log.warn(MISSING_NAME_TAG_MESSAGE, name);
+                }
+            }
+            if (name.contains("jvm.classes.unloaded")) {
+                classesUnloaded += counter.count();
+            }
+        }
 
-            resultsDatabase.putIfAbsent(key, new HashMap<>());
-            resultsDatabase.get(key).put("count", timer.count());
-            resultsDatabase.get(key).put("max", timer.max(TimeUnit.MILLISECONDS));
-            resultsDatabase.get(key).put("totalTime", timer.totalTime(TimeUnit.MILLISECONDS));
-            resultsDatabase.get(key).put("mean", timer.mean(TimeUnit.MILLISECONDS));
+        private void addCounter(Counter counter, String name) {
+            if (name.contains("jvm.gc") && !name.contains("jvm.gc.pause")) {
+                garbageCollector.put(name, counter.count());
+            }
+        }
+
+        private Map<String, Number> jvmMemory(Gauge gauge) {
+            return jvm.computeIfAbsent(gauge.getId().getTag("id"), k -> new HashMap<>());
+        }
+
+        private Map<String, Map<String, ?>> toResults() {
+            Map<String, Map<String, ?>> results = new HashMap<>();
+            // JVM stats
+            results.put("jvm", freeze(jvm));
+            // HTTP requests stats
+            Map<String, Map<String, Number>> resultsHttpPerCode = new HashMap<>();
+            httpPerCode.forEach(
+                (code, stats) -> resultsHttpPerCode.put(code, stats.toMap(serviceLevelObjectivesInMillis)));
+            Map<String, Object> resultsHttp = new HashMap<>();
+            resultsHttp.put("percode", Collections.unmodifiableMap(resultsHttpPerCode));
+            resultsHttp.put("all", Collections.singletonMap("count", httpCount));
+            results.put("http.server.requests", Collections.unmodifiableMap(resultsHttp));
+            // Cache stats
+            results.put("cache", freeze(cache));
+            // Service stats
+            Map<String, Map<String, ?>> resultsHttpPerUri = new HashMap<>();
+            services.forEach((uri, perMethod) -> {
+                Map<String, Map<String, Number>> resultsPerUri = new HashMap<>();
+                perMethod.forEach((method, stats) -> {
+                    if (stats.count != 0) {
+                        resultsPerUri.put(method, stats.toMap(serviceLevelObjectivesInMillis));
+                    }
+                });
+                resultsHttpPerUri.put(uri, Collections.unmodifiableMap(resultsPerUri));
+            });
+            results.put("services", Collections.unmodifiableMap(resultsHttpPerUri));
+            // Database stats
+            results.put("databases", freeze(databases));
+            // Garbage collector
+            garbageCollector.put("classesLoaded", classesLoaded);
+            garbageCollector.put("classesUnloaded", classesUnloaded);
+            results.put("garbageCollector", Collections.unmodifiableMap(garbageCollector));
+            // Process stats
+            results.put("processMetrics", Collections.unmodifiableMap(process));
+            // Application stats
+            sections.forEach((section, accumulator) -> results.put(section, accumulator.result()));
+
+            return Collections.unmodifiableMap(results);
+        }
+
+        private static Map<String, Map<String, Number>> freeze(Map<String, Map<String, Number>> map) {
+            map.replaceAll((key, value) -> Collections.unmodifiableMap(value));
+            return Collections.unmodifiableMap(map);
+        }
+
+        private static String lastSegment(String name) {
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+
+        private static Map<String, Number> timerStats(Timer timer) {
+            Map<String, Number> stats = new HashMap<>();
+            stats.put("count", timer.count());
+            stats.put("max", timer.max(TimeUnit.MILLISECONDS));
+            stats.put("totalTime", timer.totalTime(TimeUnit.MILLISECONDS));
+            stats.put("mean", timer.mean(TimeUnit.MILLISECONDS));
 
             ValueAtPercentile[] percentiles = timer.takeSnapshot().percentileValues();
             for (ValueAtPercentile percentile : percentiles) {
-                resultsDatabase.get(key).put(String.valueOf(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS));
+                stats.put(String.valueOf(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS));
             }
-        });
-
-        Collection<Gauge> gauges = Search.in(this.meterRegistry).name(s -> s.contains("hikari")).gauges();
-        gauges.forEach(gauge -> {
-            String key = gauge.getId().getName().substring(gauge.getId().getName().lastIndexOf('.') + 1);
-            resultsDatabase.putIfAbsent(key, new HashMap<>());
-            resultsDatabase.get(key).put("value", gauge.value());
-        });
-
-        return resultsDatabase;
+            return stats;
+        }
     }
 
-    private Map<String, Map<String, ?>> serviceMetrics() {
-        Collection<String> crudOperation = Arrays.asList("GET", "POST", "PUT", "DELETE");
-
-        Set<String> uris = new HashSet<>();
-        Collection<Timer> timers = this.meterRegistry.find("http.server.requests").timers();
-
-        timers.forEach(timer -> uris.add(timer.getId().getTag("uri")));
-        Map<String, Map<String, ?>> resultsHttpPerUri = new HashMap<>();
-
-        uris.forEach(uri -> {
-            Map<String, Map<String, ?>> resultsPerUri = new HashMap<>();
-
-            crudOperation.forEach(operation -> {
-                Map<String, Number> resultsPerUriPerCrudOperation = new HashMap<>();
-
-                Collection<Timer> httpTimersStream = this.meterRegistry.find("http.server.requests").tags("uri", uri, "method", operation).timers();
-                long count = httpTimersStream.stream().map(Timer::count).reduce(Long::sum).orElse(0L);
-
-                if (count != 0) {
-                    double max = getMax(httpTimersStream);
-                    double totalTime = getTotalTime(httpTimersStream);
-
-                    resultsPerUriPerCrudOperation.put("count", count);
-                    resultsPerUriPerCrudOperation.put("max", max);
-                    resultsPerUriPerCrudOperation.put("mean", totalTime / count);
-
-                    resultsPerUri.put(operation, resultsPerUriPerCrudOperation);
+    /**
+     * Running count, max and total time of a group of HTTP request timers.
+     * <p>
+     * When the timers publish histograms with the same bucket boundaries, their cumulative bucket
+     * counts are summed, and the percentiles of the group are read from the merged buckets. Otherwise
+     * the group reports the highest percentile value of its timers.
+     */
+    private static final class HttpStats {
+        private final TreeMap<Double, Double> buckets = new TreeMap<>();
+        private final Map<Double, Double> percentiles = new TreeMap<>();
+        private double[] boundaries;
+        private boolean mergeable = true;
+        private long count;
+        private double max;
+        private double totalTime;
+        private int timers;
+
+        private void add(Timer timer, HistogramSnapshot histogram) {
+            count += timer.count();
+            max = Math.max(max, timer.max(TimeUnit.MILLISECONDS));
+            totalTime += timer.totalTime(TimeUnit.MILLISECONDS);
+            timers++;
+            CountAtBucket[] counts = histogram.histogramCounts();
+            double[] bounds = Arrays.stream(counts)
+                .mapToDouble(bucket -> bucket.bucket(TimeUnit.MILLISECONDS))
+                .toArray();
+            if (boundaries == null) {
+                boundaries = bounds;
+            } else if (!Arrays.equals(boundaries, bounds)) {
+                // summing cumulative counts over different boundaries is not monotonic
+                mergeable = false;
+                buckets.clear();
+            }
+            if (mergeable) {
+                for (CountAtBucket bucket : counts) {
+                    buckets.merge(bucket.bucket(TimeUnit.MILLISECONDS), bucket.count(), Double::sum);
                 }
-            });
-
-            resultsHttpPerUri.put(uri, resultsPerUri);
-        });
-
-        return resultsHttpPerUri;
-    }
-
-    private Map<String, Map<String, Number>> cacheMetrics() {
-        Map<String, Map<String, Number>> resultsCache = new HashMap<>();
-
-        Collection<FunctionCounter> counters = Search.in(this.meterRegistry).name(s -> s.contains("cache") && !s.contains("hibernate")).functionCounters();
-        counters.forEach(counter -> {
-            String key = counter.getId().getName();
-            String name = counter.getId().getTag("name");
-            if (name != null) {
-                resultsCache.putIfAbsent(name, new HashMap<>());
-                if (counter.getId().getTag("result") != null) {
-                    key += "." + counter.getId().getTag("result");
+            }
+            for (ValueAtPercentile percentile : histogram.percentileValues()) {
+                percentiles.merge(percentile.percentile(), percentile.value(TimeUnit.MILLISECONDS), Math::max);
+            }
+        }
+
+        private Map<String, Number> toMap(double[] serviceLevelObjectivesInMillis) {
+            Map<String, Number> result = new HashMap<>();
+            result.put("count", count);
+            result.put("max", max);
+            result.put("mean", count != 0 ? totalTime / count : 0);
+            percentiles.forEach(
+                (percentile, value) -> result.put(String.valueOf(percentile), estimate(percentile, value)));
+            for (double slo : serviceLevelObjectivesInMillis) {
+                Double bucketCount = buckets.get(slo);
+                if (bucketCount != null) {
+                    result.put("slo." + (long) slo, bucketCount);
                 }
-                resultsCache.get(name).put(key, counter.count());
-            } else {
-                log.warn(MISSING_NAME_TAG_MESSAGE, key);
             }
-        });
-
-        Collection<Gauge> gauges = Search.in(this.meterRegistry).name(s -> s.contains("cache")).gauges();
-        gauges.forEach(gauge -> {
-            String key = gauge.getId().getName();
-            String name = gauge.getId().getTag("name");
-            if (name != null) {
-                resultsCache.putIfAbsent(name, new HashMap<>());
-                resultsCache.get(name).put(key, gauge.value());
-            } else {
-                log.warn(MISSING_NAME_TAG_MESSAGE, key);
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         * Upper bound of the merged bucket holding the given percentile. The rank is taken over all
+         * the requests, including the ones slower than the largest bucket; when it falls beyond that
+         * bucket, the highest percentile value of the timers is used, or the max if it is lower than
+         * the largest bucket.
+         */
+        private double estimate(double percentile, double fallback) {
+            if (timers == 1 || buckets.isEmpty()) {
+                return fallback;
             }
-        });
-        return resultsCache;
-    }
-
-    private Map<String, Map<String, Number>> jvmMemoryMetrics() {
-        Map<String, Map<String, Number>> resultsJvm = new HashMap<>();
-
-        Search jvmUsedSearch = Search.in(this.meterRegistry).name(s -> s.contains("jvm.memory.used"));
-
-        Collection<Gauge> gauges = jvmUsedSearch.gauges();
-        gauges.forEach(gauge -> {
-            String key = gauge.getId().getTag("id");
-            resultsJvm.putIfAbsent(key, new HashMap<>());
-            resultsJvm.get(key).put("used", gauge.value());
-        });
-
-        Search jvmMaxSearch = Search.in(this.meterRegistry).name(s -> s.contains("jvm.memory.max"));
-
-        gauges = jvmMaxSearch.gauges();
-        gauges.forEach(gauge -> {
-            String key = gauge.getId().getTag("id");
-            resultsJvm.get(key).put("max", gauge.value());
-        });
-
-        gauges = Search.in(this.meterRegistry).name(s -> s.contains("jvm.memory.committed")).gauges();
-        gauges.forEach(gauge -> {
-            String key = gauge.getId().getTag("id");
-            resultsJvm.get(key).put("committed", gauge.value());
-        });
-
-        return resultsJvm;
-    }
-
-    private Map<String, Map<String, ?>> httpRequestsMetrics() {
-        Set<String> statusCode = new HashSet<>();
-        Collection<Timer> timers = this.meterRegistry.find("http.server.requests").timers();
-
-        timers.forEach(timer -> statusCode.add(timer.getId().getTag("status")));
-
-        Map<String, Map<String, ?>> resultsHttp = new HashMap<>();
-        Map<String, Map<String, Number>> resultsHttpPerCode = new HashMap<>();
-
-        statusCode.forEach(code -> {
-            Map<String, Number> resultsPerCode = new HashMap<>();
-
-            Collection<Timer> httpTimersStream = this.meterRegistry.find("http.server.requests").tag("status", code).timers();
-            long count = httpTimersStream.stream().map(Timer::count).reduce(Long::sum).orElse(0L);
-            double max = getMax(httpTimersStream);
-            double totalTime = getTotalTime(httpTimersStream);
-
-            resultsPerCode.put("count", count);
-            resultsPerCode.put("max", max);
-            resultsPerCode.put("mean", count != 0 ? totalTime / count : 0);
-
-            resultsHttpPerCode.put(code, resultsPerCode);
-        });
-
-        resultsHttp.put("percode", resultsHttpPerCode);
-
-        timers = this.meterRegistry.find("http.server.requests").timers();
-        long countAllRequests = timers.stream().map(Timer::count).reduce(Long::sum).orElse(0L);
-        Map<String, Number> resultsHTTPAll = new HashMap<>();
-        resultsHTTPAll.put("count", countAllRequests);
-
-        resultsHttp.put("all", resultsHTTPAll);
-
-        return resultsHttp;
-    }
-
-    private double getMax(Collection<Timer> httpTimersStream) {
-        return httpTimersStream.stream().map(x -> x.max(TimeUnit.MILLISECONDS)).reduce((x, y) -> x > y ? x : y).orElse((double) 0);
-    }
-
-    private double getTotalTime(Collection<Timer> httpTimersStream) {
-        return httpTimersStream.stream().map(x -> x.totalTime(TimeUnit.MILLISECONDS)).reduce(Double::sum).orElse((double) 0);
+            double rank = percentile * count;
+            for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+                if (bucket.getValue() >= rank) {
+                    return bucket.getKey();
+                }
+            }
+            return fallback > buckets.lastKey() ? fallback : max;
+        }
     }
 }
@@ -1,7 +1,9 @@
 package com.polykhel.ssa.config.metric;
 
+import com.polykhel.ssa.config.CoreProperties;
 import io.micrometer.core.annotation.Timed;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.actuate.autoconfigure.metrics.MetricsEndpointAutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -10,6 +12,9 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 
+import java.time.Duration;
+import java.util.stream.Collectors;
+
 @ConditionalOnClass(Timed.class)
 @AutoConfigureAfter(MetricsEndpointAutoConfiguration.class)
 public class MetricsEndpointConfig {
@@ -17,14 +22,22 @@ public class MetricsEndpointConfig {
     /**
      * Metrics Endpoint
      *
-     * @param meterRegistry a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param meterRegistry  a {@link io.micrometer.core.instrument.MeterRegistry} object.
+     * @param coreProperties a {@link com.polykhel.ssa.config.CoreProperties} object.
+     * @param sections       the categories contributed by the application.
      * @return a {@link com.polykhel.ssa.config.metric.MetricsEndpoint} object.
      */
     @Bean
     @ConditionalOnBean({MeterRegistry.class})
     @ConditionalOnMissingBean
     @ConditionalOnAvailableEndpoint
-    public MetricsEndpoint metricsEndpoint(MeterRegistry meterRegistry) {
-        return new MetricsEndpoint(meterRegistry);
+    public MetricsEndpoint metricsEndpoint(
+        MeterRegistry meterRegistry, CoreProperties coreProperties, ObjectProvider<MetricsSection> sections) {
+        CoreProperties.Metrics.HttpHistogram httpHistogram = coreProperties.getMetrics().getHttpHistogram();
+        return new MetricsEndpoint(
+            meterRegistry,
+            Duration.ofMillis(coreProperties.getMetrics().getEndpoint().getSnapshotTimeToLiveInMillis()),
+            httpHistogram.isEnabled() ? httpHistogram.getServiceLevelObjectivesInMillis() : new long[0],
+            sections.orderedStream().collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,39 @@
+package com.polykhel.ssa.config.metric;
+
+import io.micrometer.core.instrument.Meter;
+
+import java.util.Map;
+
+/**
+ * Additional category of the {@link MetricsEndpoint}, contributed by an application for the meters
+ * that only it registers. Declare it as a bean to have it added to the endpoint.
+ */
+public interface MetricsSection {
+
+    /**
+     * @return the key of the category in the endpoint response.
+     */
+    String getName();
+
+    /**
+     * @return a new accumulator, used for a single aggregation.
+     */
+    Accumulator newAccumulator();
+
+    /**
+     * Collects the meters of the category while the endpoint reads the registry, so that the
+     * registry is still read in a single pass.
+     */
+    interface Accumulator {
+
+        /**
+         * @param meter a meter of the registry; meters of other categories must be ignored.
+         */
+        void add(Meter meter);
+
+        /**
+         * @return the immutable content of the category.
+         */
+        Map<String, ?> result();
+    }
+}
@@ -0,0 +1,77 @@
+package com.polykhel.ssa.security.jwt;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the authorities decoded from the {@code auth} claim, so that tokens carrying the same
+ * claim string (e.g. {@code "ROLE_ADMIN,ROLE_USER"}) share one immutable authority list.
+ * <p>
+ * The number of interned claim strings is bounded; once the limit is reached, unknown claim
+ * strings are still decoded but no longer remembered.
+ */
+final class AuthorityRegistry {
+
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final Map<String, List<GrantedAuthority>> authoritiesByClaim = new ConcurrentHashMap<>();
+
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+
+    AuthorityRegistry() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    AuthorityRegistry(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Return the authorities of a comma-separated claim string.
+     *
+     * @param claim the {@code auth} claim value.
+     * @return an immutable list of authorities.
+     */
+    List<GrantedAuthority> fromClaim(String claim) {
+        List<GrantedAuthority> interned = authoritiesByClaim.get(claim);
+        if (interned != null) {
+            return interned;
+        }
+        List<GrantedAuthority> parsed = parse(claim);
+        if (authoritiesByClaim.size() < maxEntries) {
+            List<GrantedAuthority> previous = authoritiesByClaim.putIfAbsent(claim, parsed);
+            return previous != null ? previous : parsed;
+        }
+        return parsed;
+    }
+
+    private List<GrantedAuthority> parse(String claim) {
+        String[] roles = claim.split(",");
+        List<GrantedAuthority> parsed = new ArrayList<>(roles.length);
+        for (String role : roles) {
+            parsed.add(authority(role));
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    private GrantedAuthority authority(String role) {
+        GrantedAuthority authority = authorities.get(role);
+        if (authority != null) {
+            return authority;
+        }
+        authority = new SimpleGrantedAuthority(role);
+        if (authorities.size() < maxEntries) {
+            GrantedAuthority previous = authorities.putIfAbsent(role, authority);
+            return previous != null ? previous : authority;
+        }
+        return authority;
+    }
+}
@@ -1,32 +1,39 @@
 package com.polykhel.ssa.security.jwt;
 
 import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.security.uaa.PersistentTokenCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 
 import javax.annotation.PostConstruct;
 import java.security.Key;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
-public class TokenProvider {
+public class TokenProvider implements MeterBinder {
 
     private static final String AUTHORITIES_KEY = "auth";
     private final CoreProperties coreProperties;
+    private final AuthorityRegistry authorityRegistry = new AuthorityRegistry();
     private Key key;
+    private JwtParser jwtParser;
+    private PersistentTokenCache<CachedAuthentication> authenticationCache;
     private long tokenValidityInMilliseconds;
     private long tokenValidityInMillisecondsForRememberMe;
+    private long cacheTimeToLiveInMilliseconds;
 
     public TokenProvider(CoreProperties coreProperties) {
         this.coreProperties = coreProperties;
@@ -38,6 +45,7 @@ public class TokenProvider {
         log.debug("Using a Base64-encoded JWT secret key");
         byte[] keyBytes = Decoders.BASE64.decode(secret);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
         this.tokenValidityInMilliseconds =
             1000
                 * coreProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
@@ -48,6 +56,15 @@ public class TokenProvider {
                 .getAuthentication()
                 .getJwt()
                 .getTokenValidityInSecondsForRememberMe();
+
+        CoreProperties.Security.Authentication.Jwt.Cache cache =
+            coreProperties.getSecurity().getAuthentication().getJwt().getCache();
+        this.cacheTimeToLiveInMilliseconds = 1000 * cache.getTimeToLiveInSeconds();
+        if (cache.isEnabled() && cache.getMaxEntries() > 0 && cacheTimeToLiveInMilliseconds > 0) {
+            this.authenticationCache =
+                new PersistentTokenCache<>(
+                    "jwtAuthentication", cacheTimeToLiveInMilliseconds, cache.getMaxEntries());
+        }
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
@@ -73,22 +90,61 @@ public class TokenProvider {
     }
 
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return toAuthentication(claims, token);
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    public boolean validateToken(String authToken) {
+        return resolveAuthentication(authToken).isValid();
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    /**
+     * Validate the token and build its {@link Authentication} in a single parse.
+     * <p>
+     * Verified tokens are cached until their {@code exp} claim, or the configured time to live if
+     * that comes first, so repeated requests with the same token skip the signature check. Only the
+     * subject and the immutable authorities are cached; every call gets its own {@link Authentication},
+     * as callers may set its details or erase its credentials.
+     *
+     * @param authToken the compact JWT.
+     * @return the validation result, never {@code null}.
+     */
+    public TokenValidationResult resolveAuthentication(String authToken) {
+        String cacheKey = authenticationCache != null ? cacheKey(authToken) : null;
+        long now = System.currentTimeMillis();
+        if (cacheKey != null) {
+            CachedAuthentication cached = authenticationCache.get(cacheKey);
+            if (cached != null) {
+                if (now < cached.expiresAt && cached.token.equals(authToken)) {
+                    return TokenValidationResult.valid(
+                        toAuthentication(cached.subject, cached.authorities, authToken), cached.expiresAt);
+                }
+                // a forged token may copy the signature of a valid one; only drop an expired entry
+                if (now >= cached.expiresAt) {
+                    authenticationCache.remove(cacheKey, cached);
+                }
+            }
+        }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        Claims claims = parseClaims(authToken);
+        if (claims == null) {
+            return TokenValidationResult.invalid();
+        }
+
+        List<GrantedAuthority> authorities = authorities(claims);
+        long expiresAt = expiresAt(claims, now);
+        if (cacheKey != null) {
+            authenticationCache.put(
+                cacheKey,
+                new CachedAuthentication(authToken, claims.getSubject(), authorities, expiresAt),
+                expiresAt - now);
+        }
+        return TokenValidationResult.valid(toAuthentication(claims.getSubject(), authorities, authToken), expiresAt);
     }
 
-    public boolean validateToken(String authToken) {
+    private Claims parseClaims(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (SecurityException | MalformedJwtException e) {
             log.info("Invalid JWT signature");
             log.trace("Invalid JWT signature trace.", e);
@@ -102,6 +158,57 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace.", e);
         }
-        return false;
+        return null;
+    }
+
+    private Authentication toAuthentication(Claims claims, String token) {
+        return toAuthentication(claims.getSubject(), authorities(claims), token);
+    }
+
+    private List<GrantedAuthority> authorities(Claims claims) {
+        return authorityRegistry.fromClaim(claims.get(AUTHORITIES_KEY).toString());
+    }
+
+    private static Authentication toAuthentication(
+        String subject, Collection<GrantedAuthority> authorities, String token) {
+        User principal = new User(subject, "", authorities);
+
+        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    }
+
+    private long expiresAt(Claims claims, long now) {
+        long maxExpiresAt = now + cacheTimeToLiveInMilliseconds;
+        Date expiration = claims.getExpiration();
+        return expiration != null ? Math.min(expiration.getTime(), maxExpiresAt) : maxExpiresAt;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (authenticationCache != null) {
+            authenticationCache.bindTo(registry);
+        }
+    }
+
+    /**
+     * The signature segment is the HMAC digest of the token header and claims, so it identifies the
+     * token without hashing it again. Hits are still confirmed against the full token.
+     */
+    private static String cacheKey(String authToken) {
+        int index = authToken.lastIndexOf('.');
+        if (index < 0 || index == authToken.length() - 1) {
+            return null;
+        }
+        return authToken.substring(index + 1);
+    }
+
+    @AllArgsConstructor
+    private static final class CachedAuthentication {
+        private final String token;
+        private final String subject;
+        private final List<GrantedAuthority> authorities;
+        private final long expiresAt;
     }
 }
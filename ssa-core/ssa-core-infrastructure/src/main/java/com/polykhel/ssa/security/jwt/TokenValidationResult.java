@@ -0,0 +1,33 @@
+package com.polykhel.ssa.security.jwt;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Outcome of validating and decoding a JWT in a single pass.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TokenValidationResult {
+
+    private static final TokenValidationResult INVALID = new TokenValidationResult(false, null, 0L);
+
+    private final boolean valid;
+
+    private final Authentication authentication;
+
+    /**
+     * Epoch millis after which the authentication must no longer be trusted.
+     */
+    private final long expiresAt;
+
+    public static TokenValidationResult valid(Authentication authentication, long expiresAt) {
+        return new TokenValidationResult(true, authentication, expiresAt);
+    }
+
+    public static TokenValidationResult invalid() {
+        return INVALID;
+    }
+}
@@ -2,6 +2,8 @@ package com.polykhel.ssa.security.oauth2;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
@@ -14,6 +16,7 @@ import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.client.http.OAuth2ErrorResponseErrorHandler;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.core.*;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
@@ -30,6 +33,12 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -45,23 +54,28 @@ public class AuthorizationHeaderUtil {
         new OAuth2Error(ACCESS_DENIED, "The token is expired", null);
     private final OAuth2AuthorizedClientService clientService;
     private final RestTemplateBuilder restTemplateBuilder;
+    private final Executor taskExecutor;
+    private final Map<String, RestTemplate> restTemplates = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<String>> refreshes = new ConcurrentHashMap<>();
 
     public AuthorizationHeaderUtil(
-        OAuth2AuthorizedClientService clientService, RestTemplateBuilder restTemplateBuilder) {
+        OAuth2AuthorizedClientService clientService,
+        RestTemplateBuilder restTemplateBuilder,
+        @Qualifier("taskExecutor") ObjectProvider<Executor> taskExecutor) {
         this.clientService = clientService;
         this.restTemplateBuilder = restTemplateBuilder;
+        this.taskExecutor = taskExecutor.getIfAvailable(ForkJoinPool::commonPool);
     }
 
+    /**
+     * Return the {@code Authorization} header of the current user, refreshing the access token if
+     * it is about to expire. Concurrent callers for the same principal share a single refresh.
+     *
+     * @return the header value, or empty if the authorized client has no access token.
+     */
     public Optional<String> getAuthorizationHeader() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        OAuth2AuthenticationToken oauthToken = (OAuth2AuthenticationToken) authentication;
-        String name = oauthToken.getName();
-        String registrationId = oauthToken.getAuthorizedClientRegistrationId();
-        OAuth2AuthorizedClient client = clientService.loadAuthorizedClient(registrationId, name);
-
-        if (client == null) {
-            throw new OAuth2AuthorizationException(tokenIsExpired);
-        }
+        OAuth2AuthenticationToken oauthToken = currentAuthentication();
+        OAuth2AuthorizedClient client = loadAuthorizedClient(oauthToken);
         OAuth2AccessToken accessToken = client.getAccessToken();
 
         if (accessToken != null) {
@@ -69,18 +83,128 @@ public class AuthorizationHeaderUtil {
             String accessTokenValue = accessToken.getTokenValue();
             if (isExpired(accessToken)) {
                 log.info("AccessToken expired, refreshing automatically");
-                accessTokenValue = refreshToken(client, oauthToken);
+                accessTokenValue = join(refresh(client, oauthToken, Runnable::run));
                 if (accessTokenValue == null) {
                     SecurityContextHolder.getContext().setAuthentication(null);
                     throw new OAuth2AuthorizationException(tokenIsExpired);
                 }
             }
-            String authorizationHeaderValue = String.format("%s %s", tokenType, accessTokenValue);
-            return Optional.of(authorizationHeaderValue);
+            return Optional.of(toAuthorizationHeaderValue(tokenType, accessTokenValue));
         }
         return Optional.empty();
     }
 
+    /**
+     * Asynchronous variant of {@link #getAuthorizationHeader()}: an expired access token is
+     * refreshed on the task executor instead of the calling thread.
+     * <p>
+     * The future completes exceptionally with an {@link OAuth2AuthorizationException} when the
+     * token cannot be refreshed; unlike the blocking variant, the caller's security context is left
+     * untouched.
+     *
+     * @return the header value, or empty if the authorized client has no access token.
+     */
+    public CompletableFuture<Optional<String>> getAuthorizationHeaderAsync() {
+        OAuth2AuthenticationToken oauthToken = currentAuthentication();
+        OAuth2AuthorizedClient client = loadAuthorizedClient(oauthToken);
+        OAuth2AccessToken accessToken = client.getAccessToken();
+
+        if (accessToken == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        String tokenType = accessToken.getTokenType().getValue();
+        if (!isExpired(accessToken)) {
+            return CompletableFuture.completedFuture(
+                Optional.of(toAuthorizationHeaderValue(tokenType, accessToken.getTokenValue())));
+        }
+        log.info("AccessToken expired, refreshing asynchronously");
+        return refresh(client, oauthToken, taskExecutor)
+            .thenApply(
+                accessTokenValue -> {
+                    if (accessTokenValue == null) {
+                        throw new OAuth2AuthorizationException(tokenIsExpired);
+                    }
+                    return Optional.of(toAuthorizationHeaderValue(tokenType, accessTokenValue));
+                });
+    }
+
+    private OAuth2AuthenticationToken currentAuthentication() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return (OAuth2AuthenticationToken) authentication;
+    }
+
+    private OAuth2AuthorizedClient loadAuthorizedClient(OAuth2AuthenticationToken oauthToken) {
+        OAuth2AuthorizedClient client =
+            clientService.loadAuthorizedClient(
+                oauthToken.getAuthorizedClientRegistrationId(), oauthToken.getName());
+        if (client == null) {
+            throw new OAuth2AuthorizationException(tokenIsExpired);
+        }
+        return client;
+    }
+
+    private String toAuthorizationHeaderValue(String tokenType, String accessTokenValue) {
+        return String.format("%s %s", tokenType, accessTokenValue);
+    }
+
+    /**
+     * Refresh the access token of a principal, or join the refresh already in flight for it.
+     */
+    private CompletableFuture<String> refresh(
+        OAuth2AuthorizedClient client, OAuth2AuthenticationToken oauthToken, Executor executor) {
+        String key = client.getClientRegistration().getRegistrationId() + ':' + client.getPrincipalName();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = refreshes.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        Runnable task =
+            () -> {
+                try {
+                    future.complete(refreshIfStillExpired(client, oauthToken));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    refreshes.remove(key, future);
+                }
+            };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Task executor is saturated, refreshing token on the calling thread");
+            task.run();
+        }
+        return future;
+    }
+
+    /**
+     * A refresh that completed just before this one started has already stored a new token (and
+     * possibly rotated the refresh token), so reuse it instead of refreshing again.
+     */
+    private String refreshIfStillExpired(
+        OAuth2AuthorizedClient client, OAuth2AuthenticationToken oauthToken) {
+        OAuth2AuthorizedClient current =
+            clientService.loadAuthorizedClient(
+                client.getClientRegistration().getRegistrationId(), client.getPrincipalName());
+        if (current != null
+            && current.getAccessToken() != null
+            && !isExpired(current.getAccessToken())) {
+            return current.getAccessToken().getTokenValue();
+        }
+        return refreshToken(current != null ? current : client, oauthToken);
+    }
+
+    private String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     private String refreshToken(OAuth2AuthorizedClient client, OAuth2AuthenticationToken oauthToken) {
         OAuth2AccessTokenResponse atr = refreshTokenClient(client);
         if (atr == null || atr.getAccessToken() == null) {
@@ -117,10 +241,7 @@ public class AuthorizationHeaderUtil {
                         currentClient.getClientRegistration().getProviderDetails().getTokenUri()))
                     .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                     .body(formParameters);
-            RestTemplate r =
-                restTemplate(
-                    currentClient.getClientRegistration().getClientId(),
-                    currentClient.getClientRegistration().getClientSecret());
+            RestTemplate r = restTemplate(currentClient.getClientRegistration());
             ResponseEntity<OAuthIdpTokenResponseDTO> responseEntity =
                 r.exchange(requestEntity, OAuthIdpTokenResponseDTO.class);
             return toAuth2AccessTokenResponse(Objects.requireNonNull(responseEntity.getBody()));
@@ -151,13 +272,22 @@ public class AuthorizationHeaderUtil {
             .build();
     }
 
-    private RestTemplate restTemplate(String clientId, String clientSecret) {
-        return restTemplateBuilder
-            .additionalMessageConverters(
-                new FormHttpMessageConverter(), new OAuth2AccessTokenResponseHttpMessageConverter())
-            .errorHandler(new OAuth2ErrorResponseErrorHandler())
-            .basicAuthentication(clientId, clientSecret)
-            .build();
+    /**
+     * The token endpoint client is built once per client registration, so its connection pool is
+     * reused across refreshes.
+     */
+    private RestTemplate restTemplate(ClientRegistration clientRegistration) {
+        return restTemplates.computeIfAbsent(
+            clientRegistration.getRegistrationId(),
+            registrationId ->
+                restTemplateBuilder
+                    .additionalMessageConverters(
+                        new FormHttpMessageConverter(),
+                        new OAuth2AccessTokenResponseHttpMessageConverter())
+                    .errorHandler(new OAuth2ErrorResponseErrorHandler())
+                    .basicAuthentication(
+                        clientRegistration.getClientId(), clientRegistration.getClientSecret())
+                    .build());
     }
 
     private boolean isExpired(OAuth2AccessToken accessToken) {
@@ -1,56 +1,264 @@
 package com.polykhel.ssa.security.uaa;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.AllArgsConstructor;
 
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
-public class PersistentTokenCache<T> {
+/**
+ * Thread-safe token cache with per-entry expiry and a maximum size.
+ * <p>
+ * Entries are spread over lock-striped segments, each kept in access order so that the least
+ * recently used entry is evicted in O(1) once a segment is full. Expired entries are dropped
+ * lazily when they are read or when they reach the eldest position of their segment.
+ *
+ * @param <T> the type of the cached tokens.
+ */
+public class PersistentTokenCache<T> implements MeterBinder {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private static final String DEFAULT_NAME = "persistentTokenCache";
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final String name;
     private final long expireMillis;
-    private final Map<String, PersistentTokenCache<T>.Value> map;
-    private long latestWriteTime;
+    private final Segment<T>[] segments;
+    private final Map<String, CompletableFuture<T>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
 
     public PersistentTokenCache(long expireMillis) {
-        if (expireMillis <= 0L) {
+        this(DEFAULT_NAME, expireMillis, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public PersistentTokenCache(String name, long expireMillis, int maximumSize) {
+        if (expireMillis <= 0L || maximumSize <= 0) {
             throw new IllegalArgumentException();
-        } else {
-            this.expireMillis = expireMillis;
-            this.map = new LinkedHashMap<>(64, 0.75F);
-            this.latestWriteTime = System.currentTimeMillis();
+        }
+        this.name = name;
+        this.expireMillis = expireMillis;
+        int segmentCount = Math.min(SEGMENT_COUNT, Integer.highestOneBit(maximumSize));
+        int segmentSize = Math.max(1, maximumSize / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentSize, evictionCount);
         }
     }
 
     public T get(String key) {
-        purge();
-        PersistentTokenCache<T>.Value val = this.map.get(key);
-        long time = System.currentTimeMillis();
-        return val != null && time < val.expire ? val.token : null;
+        T token = segmentFor(key).get(key, System.currentTimeMillis());
+        if (token != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return token;
+    }
+
+    /**
+     * Return the cached token, loading it on a miss.
+     * <p>
+     * Concurrent misses on the same key share a single call to the loader; the other callers wait
+     * for its result instead of loading the token again.
+     *
+     * @param key    the cache key.
+     * @param loader computes the token; a {@code null} result is returned but not cached.
+     * @return the cached or loaded token.
+     */
+    public T get(String key, Function<String, T> loader) {
+        T token = get(key);
+        if (token != null) {
+            return token;
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        try {
+            token = segmentFor(key).get(key, System.currentTimeMillis());
+            if (token == null) {
+                token = loader.apply(key);
+                if (token != null) {
+                    put(key, token);
+                }
+            }
+            future.complete(token);
+            return token;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
     }
 
     public void put(String key, T token) {
-        purge();
-        map.remove(key);
-        long time = System.currentTimeMillis();
-        map.put(key, new Value(token, time + expireMillis));
-        latestWriteTime = time;
+        put(key, token, expireMillis);
+    }
+
+    /**
+     * Cache a token that expires sooner than the cache default.
+     *
+     * @param key          the cache key.
+     * @param token        the token.
+     * @param expireMillis time to live of this entry, capped to the cache default.
+     */
+    public void put(String key, T token, long expireMillis) {
+        long ttl = Math.min(expireMillis, this.expireMillis);
+        if (ttl <= 0L) {
+            return;
+        }
+        segmentFor(key).put(key, token, System.currentTimeMillis() + ttl);
     }
 
+    public void remove(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Remove the entry of a key only if it still holds the given token, so that a caller that read a
+     * stale or mismatching entry does not evict a newer one.
+     *
+     * @param key   the cache key.
+     * @param token the token that was read, compared by identity.
+     * @return {@code true} if the entry was removed.
+     */
+    public boolean remove(String key, T token) {
+        return segmentFor(key).remove(key, token);
+    }
+
+    /**
+     * Drop every expired entry. Expiry is otherwise lazy, so this is only needed to release memory
+     * eagerly.
+     */
     public void purge() {
         long time = System.currentTimeMillis();
-        if (time - latestWriteTime > expireMillis) {
-            map.clear();
-        } else {
-            Iterator<Value> values = map.values().iterator();
-            while (values.hasNext() && time >= values.next().expire) {
-                values.remove();
+        for (Segment<T> segment : segments) {
+            segment.purge(time);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hitCount, LongAdder::sum)
+            .tags("name", name, "result", "hit")
+            .description("The number of times cache lookup methods have returned a cached value.")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", missCount, LongAdder::sum)
+            .tags("name", name, "result", "miss")
+            .description("The number of times cache lookup methods have not returned a value.")
+            .register(registry);
+        FunctionCounter.builder("cache.evictions", evictionCount, LongAdder::sum)
+            .tags("name", name)
+            .description("The number of entries evicted because the cache was full.")
+            .register(registry);
+        Gauge.builder("cache.size", this, PersistentTokenCache::size)
+            .tags("name", name)
+            .description("The number of entries in the cache.")
+            .register(registry);
+    }
+
+    private Segment<T> segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
         }
     }
 
     @AllArgsConstructor
-    private class Value {
+    private static final class Value<T> {
         private final T token;
         private final long expire;
     }
+
+    private static final class Segment<T> {
+        private final LinkedHashMap<String, Value<T>> map;
+
+        private Segment(int maximumSize, LongAdder evictionCount) {
+            this.map = new LinkedHashMap<>(Math.min(64, maximumSize), 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Value<T>> eldest) {
+                    if (size() > maximumSize) {
+                        if (System.currentTimeMillis() < eldest.getValue().expire) {
+                            evictionCount.increment();
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized T get(String key, long time) {
+            Value<T> val = map.get(key);
+            if (val == null) {
+                return null;
+            }
+            if (time >= val.expire) {
+                map.remove(key);
+                return null;
+            }
+            return val.token;
+        }
+
+        private synchronized void put(String key, T token, long expire) {
+            map.put(key, new Value<>(token, expire));
+        }
+
+        private synchronized void remove(String key) {
+            map.remove(key);
+        }
+
+        private synchronized boolean remove(String key, T token) {
+            Value<T> val = map.get(key);
+            if (val == null || val.token != token) {
+                return false;
+            }
+            map.remove(key);
+            return true;
+        }
+
+        private synchronized void purge(long time) {
+            map.values().removeIf(val -> time >= val.expire);
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+    }
 }
@@ -1,14 +1,17 @@
 package com.polykhel.ssa.security.uaa;
 
+import com.polykhel.ssa.async.BulkheadTaskExecutor;
+import com.polykhel.ssa.async.CategorizedTaskExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.core.*;
@@ -19,81 +22,218 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PreDestroy;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import static com.polykhel.ssa.utils.constants.ProfileConstants.PROFILE_UAA;
 import static com.polykhel.ssa.security.uaa.UaaConfig.CLIENT_REGISTRATION_ID;
+import static com.polykhel.ssa.utils.constants.ProfileConstants.PROFILE_UAA;
 
+/**
+ * Provides the client-credentials {@code Authorization} header used to relay requests to UAA
+ * protected services.
+ * <p>
+ * The header is rendered once per access token and renewed in the background one minute before
+ * the token expires, so request threads only read a string. Only one refresh per client
+ * registration is in flight or scheduled at any time; concurrent callers waiting for a token share
+ * its result. A token is no longer relayed within {@link #CLOCK_SKEW} of its expiry, so that it
+ * does not expire on its way to the downstream service.
+ * <p>
+ * In the {@code virtual} async mode, the background refreshes run in the {@code token} bulkhead, so
+ * that a slow authorization server only holds the refresher thread for the time of a hand-over.
+ */
 @Service
 @Profile(PROFILE_UAA)
 @Slf4j
 public class UaaAuthorizationHeaderUtil {
+
+    private static final Duration REFRESH_BEFORE_EXPIRY = Duration.ofMinutes(1L);
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5L);
+
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(30L);
+
     private final ClientRegistrationRepository clientRegistrationRepository;
-    private final OAuth2AuthorizedClientService clientRegistrationService;
     private final RestTemplate uaaRestTemplate;
+    private final Map<String, AuthorizationHeader> headers = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<AuthorizationHeader>> refreshes =
+        new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> scheduledRefreshes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private final Executor refreshExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> refreshTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> refreshFailures = new ConcurrentHashMap<>();
 
     public UaaAuthorizationHeaderUtil(
         ClientRegistrationRepository clientRegistrationRepository,
-        OAuth2AuthorizedClientService clientRegistrationService,
-        RestTemplate uaaRestTemplate) {
+        RestTemplate uaaRestTemplate,
+        ObjectProvider<MeterRegistry> meterRegistry,
+        ObjectProvider<BulkheadTaskExecutor> bulkheadTaskExecutor) {
         this.clientRegistrationRepository = clientRegistrationRepository;
-        this.clientRegistrationService = clientRegistrationService;
         this.uaaRestTemplate = uaaRestTemplate;
+        this.refresher =
+            Executors.newSingleThreadScheduledExecutor(
+                job -> {
+                    Thread thread = new Thread(job, "UaaTokenRefresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        BulkheadTaskExecutor bulkhead = bulkheadTaskExecutor.getIfAvailable();
+        this.refreshExecutor =
+            bulkhead != null
+                ? task -> bulkhead.execute(CategorizedTaskExecutor.TOKEN_CATEGORY, task)
+                : Runnable::run;
+
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
     }
 
     public String getAuthorizationHeader() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        Optional<OAuth2AuthorizedClient> client =
-            Optional.ofNullable(
-                clientRegistrationService.loadAuthorizedClient(
-                    CLIENT_REGISTRATION_ID, authentication.getName()));
+        return getAuthorizationHeader(CLIENT_REGISTRATION_ID);
+    }
 
-        if (client.isEmpty() || client.get().getAccessToken() == null) {
+    public String getAuthorizationHeader(String registrationId) {
+        AuthorizationHeader header = headers.get(registrationId);
+        if (header == null) {
             log.info("AccessToken not found, refreshing automatically");
-            client = refreshAuthorizedClient(authentication);
-        } else if (isExpired(client.get().getAccessToken())) {
+            header = awaitRefresh(registrationId);
+        } else if (!Instant.now().isBefore(header.usableUntil)) {
             log.info("AccessToken expired, refreshing automatically");
-            client = refreshAuthorizedClient(authentication);
+            header = awaitRefresh(registrationId);
         }
+        header.used = true;
+        return header.value;
+    }
 
-        return client
-            .map(OAuth2AuthorizedClient::getAccessToken)
-            .map(this::toAuthorizationHeaderValue)
-            .orElseThrow(
-                () ->
-                    new OAuth2AuthorizationException(
-                        new OAuth2Error(
-                            OAuth2ErrorCodes.UNAUTHORIZED_CLIENT,
-                            "Unable to get access token for user",
-                            null)));
+    @PreDestroy
+    public void destroy() {
+        refresher.shutdownNow();
     }
 
-    private String toAuthorizationHeaderValue(OAuth2AccessToken accessToken) {
-        return String.format(
-            "%s %s", accessToken.getTokenType().getValue(), accessToken.getTokenValue());
+    private AuthorizationHeader awaitRefresh(String registrationId) {
+        try {
+            return refresh(registrationId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Start a refresh for the registration, or join the one already in flight.
+     */
+    private CompletableFuture<AuthorizationHeader> refresh(String registrationId) {
+        CompletableFuture<AuthorizationHeader> future = new CompletableFuture<>();
+        CompletableFuture<AuthorizationHeader> inFlight = refreshes.putIfAbsent(registrationId, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        try {
+            AuthorizationHeader header =
+                refreshTimer(registrationId).record(() -> retrieveHeader(registrationId));
+            headers.put(registrationId, header);
+            scheduleRefresh(registrationId, header.refreshAt);
+            future.complete(header);
+        } catch (RuntimeException e) {
+            refreshFailures(registrationId).increment();
+            future.completeExceptionally(e);
+        } finally {
+            refreshes.remove(registrationId, future);
+        }
+        return future;
     }
 
-    private Optional<OAuth2AuthorizedClient> refreshAuthorizedClient(Authentication authentication) {
+    /**
+     * Replace the pending refresh of the registration, so that failures and request-thread refreshes
+     * never leave several refresh chains behind.
+     */
+    private void scheduleRefresh(String registrationId, Instant refreshAt) {
+        long delay = Math.max(0L, Duration.between(Instant.now(), refreshAt).toMillis());
+        scheduledRefreshes.compute(
+            registrationId,
+            (id, pending) -> {
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                return refresher.schedule(
+                    () -> refreshExecutor.execute(() -> backgroundRefresh(id)), delay, TimeUnit.MILLISECONDS);
+            });
+    }
+
+    private void backgroundRefresh(String registrationId) {
+        AuthorizationHeader current = headers.get(registrationId);
+        if (current == null || !current.used) {
+            // Not relayed since the last refresh: let it expire, the next request fetches a new one.
+            return;
+        }
+        refresh(registrationId)
+            .whenComplete(
+                (header, e) -> {
+                    if (e != null) {
+                        log.warn("Unable to refresh access token, retrying in {}", RETRY_DELAY, e);
+                        scheduleRefresh(registrationId, Instant.now().plus(RETRY_DELAY));
+                    }
+                });
+    }
+
+    private Timer refreshTimer(String registrationId) {
+        return refreshTimers.computeIfAbsent(
+            registrationId,
+            id ->
+                Timer.builder("uaa.token.refresh")
+                    .tag("registration", id)
+                    .description("Time taken to retrieve a client-credentials access token")
+                    .register(meterRegistry));
+    }
+
+    private Counter refreshFailures(String registrationId) {
+        return refreshFailures.computeIfAbsent(
+            registrationId,
+            id ->
+                Counter.builder("uaa.token.refresh.failures")
+                    .tag("registration", id)
+                    .description("Number of failed client-credentials access token retrievals")
+                    .register(meterRegistry));
+    }
+
+    private AuthorizationHeader retrieveHeader(String registrationId) {
         ClientRegistration clientRegistration =
-            clientRegistrationRepository.findByRegistrationId(CLIENT_REGISTRATION_ID);
+            clientRegistrationRepository.findByRegistrationId(registrationId);
         if (clientRegistration == null) {
             throw new IllegalArgumentException(
-                "Invalid Client Registration with Id: " + CLIENT_REGISTRATION_ID);
+                "Invalid Client Registration with Id: " + registrationId);
         }
 
         OAuth2AccessToken accessToken = retrieveNewAccessToken(clientRegistration);
         if (accessToken == null) {
             log.info("Unable to get access token for user");
-            return Optional.empty();
+            throw new OAuth2AuthorizationException(
+                new OAuth2Error(
+                    OAuth2ErrorCodes.UNAUTHORIZED_CLIENT, "Unable to get access token for user", null));
         }
-        OAuth2AuthorizedClient updatedAuthorizedClient =
-            new OAuth2AuthorizedClient(clientRegistration, authentication.getName(), accessToken);
-        clientRegistrationService.saveAuthorizedClient(updatedAuthorizedClient, authentication);
-        return Optional.of(updatedAuthorizedClient);
+        Instant expiresAt = Objects.requireNonNull(accessToken.getExpiresAt());
+        return new AuthorizationHeader(
+            toAuthorizationHeaderValue(accessToken),
+            expiresAt.minus(CLOCK_SKEW),
+            expiresAt.minus(REFRESH_BEFORE_EXPIRY));
+    }
+
+    private String toAuthorizationHeaderValue(OAuth2AccessToken accessToken) {
+        return String.format(
+            "%s %s", accessToken.getTokenType().getValue(), accessToken.getTokenValue());
     }
 
     private OAuth2AccessToken retrieveNewAccessToken(ClientRegistration clientRegistration) {
@@ -115,9 +255,16 @@ public class UaaAuthorizationHeaderUtil {
         }
     }
 
-    private boolean isExpired(OAuth2AccessToken accessToken) {
-        Instant now = Instant.now();
-        Instant expiresAt = Objects.requireNonNull(accessToken.getExpiresAt());
-        return now.isAfter(expiresAt.minus(Duration.ofMinutes(1L)));
+    private static final class AuthorizationHeader {
+        private final String value;
+        private final Instant usableUntil;
+        private final Instant refreshAt;
+        private volatile boolean used;
+
+        private AuthorizationHeader(String value, Instant usableUntil, Instant refreshAt) {
+            this.value = value;
+            this.usableUntil = usableUntil;
+            this.refreshAt = refreshAt;
+        }
     }
 }
@@ -0,0 +1,154 @@
+package com.polykhel.ssa.utils;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keyset pagination request: the size of the slice, its sort, and the sort keys of the last element
+ * of the previous slice.
+ * <p>
+ * The keys travel as an opaque continuation token in the {@code cursor} query parameter. The query
+ * returns the elements after the keys in the sort order, for example
+ * {@code findByIdGreaterThan(cursor.getKey(0), cursor.toPageable())} with a {@code Slice} return type,
+ * which never counts nor skips elements, whatever the depth.
+ */
+public final class CursorPageable {
+
+    /**
+     * Constant <code>CURSOR_PARAMETER="cursor"</code>
+     */
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    private static final byte VERSION = 1;
+
+    private final List<String> keys;
+
+    private final int size;
+
+    private final Sort sort;
+
+    private CursorPageable(List<String> keys, int size, Sort sort) {
+        this.keys = keys;
+        this.size = size;
+        this.sort = sort;
+    }
+
+    /**
+     * Request of the first slice.
+     *
+     * @param size number of elements in the slice.
+     * @param sort sort of the elements, on unique keys.
+     * @return the request.
+     */
+    public static CursorPageable first(int size, Sort sort) {
+        return of(null, size, sort);
+    }
+
+    /**
+     * Request of the slice after the given cursor.
+     *
+     * @param cursor continuation token built by {@link #encode(Object...)}, or {@code null} for the
+     *               first slice.
+     * @param size   number of elements in the slice.
+     * @param sort   sort of the elements, on unique keys.
+     * @return the request.
+     * @throws java.lang.IllegalArgumentException if the cursor is not a valid token.
+     */
+    public static CursorPageable of(String cursor, int size, Sort sort) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Slice size must not be less than one!");
+        }
+        List<String> keys = cursor == null || cursor.isEmpty() ? Collections.emptyList() : decode(cursor);
+        return new CursorPageable(keys, size, sort != null ? sort : Sort.unsorted());
+    }
+
+    /**
+     * Build the continuation token of the slice after an element.
+     *
+     * @param keys sort keys of the last element of the slice, in the sort order.
+     * @return the opaque, URL-safe continuation token.
+     */
+    public static String encode(Object... keys) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(VERSION);
+            output.writeShort(keys.length);
+            for (Object key : keys) {
+                output.writeUTF(Objects.toString(key, ""));
+            }
+        } catch (IOException e) {
+            // a ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static List<String> decode(String cursor) {
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported cursor version");
+            }
+            int count = input.readUnsignedShort();
+            List<String> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(input.readUTF());
+            }
+            if (input.available() > 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return Collections.unmodifiableList(keys);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * @return {@code true} if this is the request of the first slice.
+     */
+    public boolean isFirst() {
+        return keys.isEmpty();
+    }
+
+    /**
+     * @return the sort keys of the last element of the previous slice, empty for the first slice.
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @param index position of the key in the sort order.
+     * @return the key, or {@code null} for the first slice.
+     */
+    public String getKey(int index) {
+        return index < keys.size() ? keys.get(index) : null;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    /**
+     * @return the first page of the given size and sort, to pass to the keyset query.
+     */
+    public Pageable toPageable() {
+        return PageRequest.of(0, size, sort);
+    }
+}
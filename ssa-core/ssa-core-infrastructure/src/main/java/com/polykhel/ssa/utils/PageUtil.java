@@ -3,9 +3,13 @@ package com.polykhel.ssa.utils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 ;
 
@@ -36,4 +40,29 @@ public interface PageUtil {
         int endOfPage = Math.min(startOfPage + pageable.getPageSize(), list.size());
         return new PageImpl<>(list.subList(startOfPage, endOfPage), pageable, list.size());
     }
+
+    /**
+     * Create a {@link org.springframework.data.domain.Slice} from a {@link java.util.stream.Stream} of objects, reading
+     * only the elements up to the end of the slice, plus one to know whether there is a next slice.
+     *
+     * @param stream stream of objects, which is consumed
+     * @param pageable pagination information.
+     * @param <T> type of object
+     * @return slice containing objects, and attributes set according to pageable
+     * @throws java.lang.IllegalArgumentException - if stream is null
+     */
+    static <T> Slice<T> createSliceFromStream(Stream<T> stream, Pageable pageable) {
+        if (stream == null) {
+            throw new IllegalArgumentException("To create a Slice, the stream must not be null!");
+        }
+
+        List<T> content = stream.skip(pageable.getOffset())
+            .limit(pageable.getPageSize() + 1L)
+            .collect(Collectors.toList());
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content.remove(content.size() - 1);
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
 }
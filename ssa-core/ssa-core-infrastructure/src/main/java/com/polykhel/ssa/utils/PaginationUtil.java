@@ -1,10 +1,13 @@
 package com.polykhel.ssa.utils;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Utility class for handling pagination.
@@ -12,6 +15,9 @@ import java.text.MessageFormat;
  * <p>
  * Pagination uses the same principles as the <a href="https://developer.github.com/v3/#pagination">GitHub API</a>,
  * and follow <a href="http://tools.ietf.org/html/rfc5988">RFC 5988 (Link header)</a>.
+ * <p>
+ * The {@link org.springframework.data.domain.Slice} and cursor variants do not need the total count of elements, so they
+ * do not emit the {@code X-Total-Count} header nor the {@code last} link.
  */
 public final class PaginationUtil {
 
@@ -50,13 +56,74 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generate pagination headers for a Spring Data {@link org.springframework.data.domain.Slice} object.
+     *
+     * @param uriBuilder The URI builder.
+     * @param slice      The slice.
+     * @param <T>        The type of object.
+     * @return http header.
+     */
+    public static <T> HttpHeaders generateSliceHttpHeaders(UriComponentsBuilder uriBuilder, Slice<T> slice) {
+        HttpHeaders headers = new HttpHeaders();
+        int pageNumber = slice.getNumber();
+        int pageSize = slice.getSize();
+        StringBuilder link = new StringBuilder();
+        if (slice.hasNext()) {
+            link.append(prepareLink(uriBuilder, pageNumber + 1, pageSize, "next"))
+                .append(",");
+        }
+        if (slice.hasPrevious()) {
+            link.append(prepareLink(uriBuilder, pageNumber - 1, pageSize, "prev"))
+                .append(",");
+        }
+        link.append(prepareLink(uriBuilder, 0, pageSize, "first"));
+        headers.add(HttpHeaders.LINK, link.toString());
+        return headers;
+    }
+
+    /**
+     * Generate keyset pagination headers for a {@link org.springframework.data.domain.Slice} fetched with a
+     * {@link CursorPageable}. The {@code next} link carries the continuation token of the last element.
+     *
+     * @param uriBuilder The URI builder.
+     * @param slice      The slice.
+     * @param cursor     Builds the continuation token of an element, usually with {@link CursorPageable#encode(Object...)}.
+     * @param <T>        The type of object.
+     * @return http header.
+     */
+    public static <T> HttpHeaders generateCursorHttpHeaders(UriComponentsBuilder uriBuilder, Slice<T> slice,
+                                                            Function<T, String> cursor) {
+        HttpHeaders headers = new HttpHeaders();
+        int pageSize = slice.getSize();
+        StringBuilder link = new StringBuilder();
+        List<T> content = slice.getContent();
+        if (slice.hasNext() && !content.isEmpty()) {
+            String next = cursor.apply(content.get(content.size() - 1));
+            link.append(MessageFormat.format(HEADER_LINK_FORMAT, prepareCursorUri(uriBuilder, next, pageSize), "next"))
+                .append(",");
+        }
+        link.append(MessageFormat.format(HEADER_LINK_FORMAT, prepareCursorUri(uriBuilder, null, pageSize), "first"));
+        headers.add(HttpHeaders.LINK, link.toString());
+        return headers;
+    }
+
     private static String prepareLink(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize, String relType) {
         return MessageFormat.format(HEADER_LINK_FORMAT, preparePageUri(uriBuilder, pageNumber, pageSize), relType);
     }
 
     private static String preparePageUri(UriComponentsBuilder uriBuilder, int pageNumber, int pageSize) {
         return uriBuilder.replaceQueryParam("page", Integer.toString(pageNumber))
-            .replaceQueryParam("size", Integer.toString(pageNumber))
+            .replaceQueryParam("size", Integer.toString(pageSize))
+            .toUriString()
+            .replace(",", "%2C")
+            .replace(";", "%3B");
+    }
+
+    private static String prepareCursorUri(UriComponentsBuilder uriBuilder, String cursor, int pageSize) {
+        return uriBuilder.replaceQueryParam("page")
+            .replaceQueryParam(CursorPageable.CURSOR_PARAMETER, cursor == null ? new Object[0] : new Object[]{cursor})
+            .replaceQueryParam("size", Integer.toString(pageSize))
             .toUriString()
             .replace(",", "%2C")
             .replace(";", "%3B");
@@ -1,5 +1,9 @@
 package com.polykhel.ssa.utils.constants;
 
+import com.polykhel.ssa.async.AsyncMode;
+import com.polykhel.ssa.async.RejectionPolicy;
+
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +17,12 @@ public interface PropertyDefaults {
         int corePoolSize = 2;
         int maxPoolSize = 50;
         int queueCapacity = 10000;
+        int keepAliveSeconds = 60;
+        AsyncMode mode = AsyncMode.STANDARD;
+        long queueWaitThresholdInMillis = 100L;
+        RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+        long blockTimeoutInMillis = 1_000L;
+        Map<String, Integer> bulkheads = new LinkedHashMap<>();
     }
 
     interface Http {
@@ -60,6 +70,12 @@ public interface PropertyDefaults {
                 String base64Secret = null;
                 long tokenValidityInSeconds = 1800; // 30 minutes
                 long tokenValidityInSecondsForRememberMe = 2592000; // 30 days
+
+                interface Cache {
+                    boolean enabled = true;
+                    int maxEntries = 10_000;
+                    long timeToLiveInSeconds = 300; // 5 minutes
+                }
             }
         }
 
@@ -94,6 +110,23 @@ public interface PropertyDefaults {
             long reportFrequency = 60;
         }
 
+        interface Endpoint {
+            long snapshotTimeToLiveInMillis = 5_000L;
+        }
+
+        interface HttpHistogram {
+            boolean enabled = false;
+            List<String> uriPatterns = new ArrayList<>();
+            double[] percentiles = {0.5, 0.95, 0.99, 0.999};
+            int percentilePrecision = 2;
+            boolean percentileHistogram = true;
+            long[] serviceLevelObjectivesInMillis = {100L, 250L, 500L, 1_000L, 2_500L};
+            long minimumExpectedValueInMillis = 1L;
+            long maximumExpectedValueInMillis = 30_000L;
+            long expiryInSeconds = 120L;
+            int bufferLength = 3;
+        }
+
         interface Prometheus {
             boolean enabled = false;
             String endpoint = "/prometheusMetrics";
@@ -108,6 +141,26 @@ public interface PropertyDefaults {
             String host = "localhost";
             int port = 5000;
             int queueSize = 512;
+            boolean buffered = false;
+            int batchSize = 256;
+            String spillPath = "target/logstash.spill";
+            int spillMaxSizeInMb = 16;
+            long reconnectDelayInMillis = 1_000L;
+        }
+
+        interface Async {
+            boolean enabled = true;
+            int queueSize = 8192;
+            int batchSize = 256;
+            String dropLevel = "INFO";
+            int discardingThreshold = 20;
+            long maxBlockMillis = -1L;
+        }
+
+        interface Aspect {
+            boolean samplingEnabled = false;
+            double sampleRate = 0.01;
+            long slowThresholdInMillis = 1_000L;
         }
     }
 
@@ -131,6 +184,12 @@ public interface PropertyDefaults {
 
     interface Registry {
         String password = null;
+
+        interface Events {
+            int bufferSize = 256;
+            long timeoutInMillis = 1_800_000L; // 30 minutes
+            int historySize = 100_000;
+        }
     }
 
     interface ClientApp {
@@ -140,4 +199,9 @@ public interface PropertyDefaults {
     interface AuditEvents {
         int retentionPeriod = 30;
     }
+
+    interface Liquibase {
+        boolean asyncStart = false;
+        boolean skipUnchanged = false;
+    }
 }
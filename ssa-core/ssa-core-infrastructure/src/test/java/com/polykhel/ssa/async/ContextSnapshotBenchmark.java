@@ -0,0 +1,123 @@
+package com.polykhel.ssa.async;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the round trip of a task through a plain {@link ThreadPoolTaskExecutor} with the same
+ * pool decorated by {@link AsyncTaskExecutorWithExceptionHandling}, which carries the
+ * {@link ContextSnapshot} of the submitting thread, with and without the executor metrics.
+ * <p>
+ * Not run by the tests: run {@link #main(String[])} from the IDE, or the test classpath with
+ * {@code org.openjdk.jmh.Main}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextSnapshotBenchmark {
+
+    private static final Callable<String> TASK = () -> MDC.get("requestId");
+
+    @State(Scope.Benchmark)
+    public static class Executors {
+
+        ThreadPoolTaskExecutor pool;
+
+        AsyncTaskExecutorWithExceptionHandling decorated;
+
+        AsyncTaskExecutorWithExceptionHandling metered;
+
+        @Setup
+        public void setUp() {
+            pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(2);
+            pool.setMaxPoolSize(2);
+            pool.setThreadNamePrefix("benchmark-");
+            pool.initialize();
+            decorated = new AsyncTaskExecutorWithExceptionHandling(pool, "decorated");
+            metered = new AsyncTaskExecutorWithExceptionHandling(pool, "metered");
+            metered.bindTo(new SimpleMeterRegistry());
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The context of the benchmark thread, as set by the security filters and request logging.
+     */
+    @State(Scope.Thread)
+    public static class Context {
+
+        @Setup
+        public void setUp() {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "user", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+            MDC.put("requestId", "0123456789abcdef");
+            MDC.put("user", "user");
+        }
+
+        @TearDown
+        public void tearDown() {
+            SecurityContextHolder.clearContext();
+            MDC.clear();
+        }
+    }
+
+    @Benchmark
+    public String plain(Executors executors, Context context) throws ExecutionException, InterruptedException {
+        return executors.pool.submit(TASK).get();
+    }
+
+    @Benchmark
+    public String decorated(Executors executors, Context context)
+        throws ExecutionException, InterruptedException {
+        return executors.decorated.submit(TASK).get();
+    }
+
+    @Benchmark
+    public String metered(Executors executors, Context context) throws ExecutionException, InterruptedException {
+        return executors.metered.submit(TASK).get();
+    }
+
+    /**
+     * The capture on the submitting thread and the apply and restore on the pool thread, without the
+     * hand-off.
+     */
+    @Benchmark
+    public ContextSnapshot captureAndApply(Context context) {
+        ContextSnapshot previous = ContextSnapshot.capture().apply();
+        previous.restore();
+        return previous;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ContextSnapshotBenchmark.class.getSimpleName()).build()).run();
+    }
+}
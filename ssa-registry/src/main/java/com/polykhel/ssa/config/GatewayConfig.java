@@ -1,8 +1,17 @@
 package com.polykhel.ssa.config;
 
 import com.polykhel.ssa.config.filter.AccessControlFilter;
+import com.polykhel.ssa.config.filter.InMemoryRateLimiterBackend;
+import com.polykhel.ssa.config.filter.RateLimiterBackend;
+import com.polykhel.ssa.config.filter.RateLimitingFilter;
+import com.polykhel.ssa.config.filter.RouteMetricsFilter;
+import com.polykhel.ssa.config.filter.RouteMetricsSection;
 import com.polykhel.ssa.config.filter.SwaggerDocsFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -22,4 +31,44 @@ public class GatewayConfig {
         RouteLocator routeLocator, CoreProperties properties) {
         return new AccessControlFilter(routeLocator, properties);
     }
+
+    /**
+     * Quotas are kept in memory unless a shared {@link RateLimiterBackend} bean is provided.
+     */
+    @Bean
+    @ConditionalOnProperty("core.gateway.rate-limiting.enabled")
+    public RateLimitingFilter rateLimitingFilter(
+        CoreProperties properties, ObjectProvider<RateLimiterBackend> rateLimiterBackend) {
+        return new RateLimitingFilter(
+            properties, rateLimiterBackend.getIfAvailable(InMemoryRateLimiterBackend::new));
+    }
+
+    @Bean
+    public RouteMetricsFilter routeMetricsStartFilter(
+        MeterRegistry meterRegistry, ZuulProperties zuulProperties, RouteLocator routeLocator) {
+        return new RouteMetricsFilter(RouteMetricsFilter.Stage.START, meterRegistry, zuulProperties, routeLocator);
+    }
+
+    @Bean
+    public RouteMetricsFilter routeMetricsUpstreamFilter(
+        MeterRegistry meterRegistry, ZuulProperties zuulProperties, RouteLocator routeLocator) {
+        return new RouteMetricsFilter(RouteMetricsFilter.Stage.UPSTREAM, meterRegistry, zuulProperties, routeLocator);
+    }
+
+    @Bean
+    public RouteMetricsFilter routeMetricsResponseFilter(
+        MeterRegistry meterRegistry, ZuulProperties zuulProperties, RouteLocator routeLocator) {
+        return new RouteMetricsFilter(RouteMetricsFilter.Stage.RESPONSE, meterRegistry, zuulProperties, routeLocator);
+    }
+
+    @Bean
+    public RouteMetricsFilter routeMetricsEndFilter(
+        MeterRegistry meterRegistry, ZuulProperties zuulProperties, RouteLocator routeLocator) {
+        return new RouteMetricsFilter(RouteMetricsFilter.Stage.END, meterRegistry, zuulProperties, routeLocator);
+    }
+
+    @Bean
+    public RouteMetricsSection routeMetricsSection() {
+        return new RouteMetricsSection();
+    }
 }
@@ -3,11 +3,15 @@ package com.polykhel.ssa.config;
 import ch.qos.logback.classic.LoggerContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.polykhel.ssa.config.logging.AsyncLoggingMetrics;
+import com.polykhel.ssa.config.logging.BufferedLogstashMetrics;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.info.BuildProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.HashMap;
@@ -41,7 +45,7 @@ public class LoggingConfig {
         CoreProperties.Logging.Logstash logstashProperties = loggingProperties.getLogstash();
 
         if (loggingProperties.isUseJsonFormat()) {
-            addJsonConsoleAppender(context, customFields);
+            addJsonConsoleAppender(context, customFields, loggingProperties.getAsync());
         }
         if (logstashProperties.isEnabled()) {
             addLogstashTcpSocketAppender(context, customFields, logstashProperties);
@@ -53,4 +57,16 @@ public class LoggingConfig {
             setMetricsMarkerLogbackFilter(context, loggingProperties.isUseJsonFormat());
         }
     }
+
+    @Bean
+    @ConditionalOnProperty("core.logging.use-json-format")
+    public AsyncLoggingMetrics asyncLoggingMetrics() {
+        return new AsyncLoggingMetrics((LoggerContext) LoggerFactory.getILoggerFactory());
+    }
+
+    @Bean
+    @ConditionalOnProperty({"core.logging.logstash.enabled", "core.logging.logstash.buffered"})
+    public BufferedLogstashMetrics bufferedLogstashMetrics() {
+        return new BufferedLogstashMetrics((LoggerContext) LoggerFactory.getILoggerFactory());
+    }
 }
@@ -0,0 +1,63 @@
+package com.polykhel.ssa.config;
+
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Published once the changed properties have been applied to the environment and rebound to the
+ * {@code @ConfigurationProperties} beans that hold them, so that the components built from these
+ * beans can rebuild only what depends on the changed keys.
+ */
+public class PropertiesChangedEvent extends ApplicationEvent {
+
+    private final Set<String> keys;
+
+    private final Set<String> beanNames;
+
+    private final List<ConfigurationPropertyName> names = new ArrayList<>();
+
+    /**
+     * @param source    the component that applied the change.
+     * @param keys      the keys of the properties that were added, removed or changed.
+     * @param beanNames the names of the rebound {@code @ConfigurationProperties} beans.
+     */
+    public PropertiesChangedEvent(Object source, Set<String> keys, Set<String> beanNames) {
+        super(source);
+        this.keys = Collections.unmodifiableSet(keys);
+        this.beanNames = Collections.unmodifiableSet(beanNames);
+        for (String key : keys) {
+            names.add(ConfigurationPropertyName.adapt(key, '.'));
+        }
+    }
+
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    public Set<String> getBeanNames() {
+        return beanNames;
+    }
+
+    /**
+     * Check whether a property, or one of its nested properties, has changed. Keys are compared with
+     * relaxed binding rules, e.g. {@code core.gateway.rate-limiting} matches a changed
+     * {@code core.gateway.rateLimiting.limit} key.
+     *
+     * @param prefix the property name, in its canonical form.
+     * @return {@code true} if it has changed.
+     */
+    public boolean isChanged(String prefix) {
+        ConfigurationPropertyName name = ConfigurationPropertyName.of(prefix);
+        for (ConfigurationPropertyName changed : names) {
+            if (name.equals(changed) || name.isAncestorOf(changed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,14 +3,18 @@ package com.polykhel.ssa.config.filter;
 import com.netflix.zuul.ZuulFilter;
 import com.netflix.zuul.context.RequestContext;
 import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.config.PropertiesChangedEvent;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.client.discovery.event.InstanceRegisteredEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_TYPE;
 
@@ -24,6 +28,10 @@ public class AccessControlFilter extends ZuulFilter {
 
     private final CoreProperties properties;
 
+    private final AtomicLong routesVersion = new AtomicLong();
+
+    private volatile RouteAccessIndex routeIndex;
+
     public AccessControlFilter(RouteLocator routeLocator, CoreProperties properties) {
         this.routeLocator = routeLocator;
         this.properties = properties;
@@ -47,46 +55,78 @@ public class AccessControlFilter extends ZuulFilter {
         HttpServletRequest request = RequestContext.getCurrentContext().getRequest();
         String requestUri = request.getRequestURI();
         String contextPath = request.getContextPath();
+        if (!requestUri.startsWith(contextPath)) {
+            return true;
+        }
 
-        for (Route route : routeLocator.getRoutes()) {
-            String serviceUrl = contextPath + route.getFullPath();
-            String serviceName = route.getId();
-
-            // remove the "**" at the end of the route URL
-            if (requestUri.startsWith(serviceUrl.substring(0, serviceUrl.length() - 2))) {
-                return !isAuthorizedRequest(serviceUrl, serviceName, requestUri);
-            }
+        RouteAccessIndex.RouteRule route = routeIndex().match(requestUri, contextPath.length());
+        if (route == null) {
+            return true;
         }
+        return !isAuthorizedRequest(route, contextPath, requestUri);
+    }
 
-        return true;
+    /**
+     * Invalidate the route index on the events that make Zuul reload its routes. It is rebuilt on
+     * the next request, once the Zuul handler mapping has refreshed the route locator.
+     */
+    @EventListener({
+        RoutesRefreshedEvent.class,
+        RefreshScopeRefreshedEvent.class,
+        InstanceRegisteredEvent.class,
+        HeartbeatEvent.class
+    })
+    public void onRoutesRefreshed() {
+        routesVersion.incrementAndGet();
     }
 
-    private boolean isAuthorizedRequest(String serviceUrl, String serviceName, String requestUri) {
-        Map<String, List<String>> authorizedMicroservicesEndpoints =
-            properties.getGateway().getAuthorizedMicroservicesEndpoints();
+    /**
+     * Only a change of the authorized endpoints invalidates the route index, the route changes are
+     * followed by a {@link RoutesRefreshedEvent}.
+     */
+    @EventListener
+    public void onPropertiesChanged(PropertiesChangedEvent event) {
+        if (event.isChanged("core.gateway.authorized-microservices-endpoints")) {
+            log.debug("Access Control: authorized microservices endpoints have changed");
+            routesVersion.incrementAndGet();
+        }
+    }
 
-        List<String> authorizedEndpoints = authorizedMicroservicesEndpoints.get(serviceName);
+    private RouteAccessIndex routeIndex() {
+        long version = routesVersion.get();
+        RouteAccessIndex index = this.routeIndex;
+        if (index == null || index.getVersion() != version) {
+            index =
+                RouteAccessIndex.build(
+                    version,
+                    routeLocator.getRoutes(),
+                    properties.getGateway().getAuthorizedMicroservicesEndpoints());
+            this.routeIndex = index;
+        }
+        return index;
+    }
+
+    private boolean isAuthorizedRequest(
+        RouteAccessIndex.RouteRule route, String contextPath, String requestUri) {
         // If the authorized endpoints list is empty for this service, all access is allowed
-        if (authorizedEndpoints == null) {
+        if (!route.hasAccessControlPolicy()) {
             log.debug(
                 "Access Control: allowing access for {} as no access control policy has been set up for "
                     + "service: {}",
                 requestUri,
-                serviceName);
+                route.getServiceName());
             return true;
-        } else {
-            for (String endpoint : authorizedEndpoints) {
-                // remove the "**/" at the end of the route URL
-                String gatewayEndpoint = serviceUrl.substring(0, serviceUrl.length() - 3) + endpoint;
-                if (requestUri.startsWith(gatewayEndpoint)) {
-                    log.debug(
-                        "Access Control: allowing access for {} as it matches the following authorized "
-                            + "microservice endpoint: {}",
-                        requestUri,
-                        gatewayEndpoint);
-                    return true;
-                }
+        }
+        String endpoint = route.matchEndpoint(requestUri, contextPath.length());
+        if (endpoint != null) {
+            if (log.isDebugEnabled()) {
+                log.debug(
+                    "Access Control: allowing access for {} as it matches the following authorized "
+                        + "microservice endpoint: {}",
+                    requestUri,
+                    contextPath + route.getBasePath() + endpoint);
             }
+            return true;
         }
         return false;
     }
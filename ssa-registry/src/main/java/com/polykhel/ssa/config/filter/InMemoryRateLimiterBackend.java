@@ -0,0 +1,73 @@
+package com.polykhel.ssa.config.filter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process {@link RateLimiterBackend}, used by a single registry node and in tests.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding its theoretical arrival time, as in the
+ * generic cell rate algorithm: a request is accepted when that time is no further in the future
+ * than the bucket can absorb, and pushes it back by one emission interval. This is equivalent to a
+ * token bucket refilled continuously, and is updated with a lock-free compare-and-set.
+ */
+public class InMemoryRateLimiterBackend implements RateLimiterBackend {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public Probe tryConsume(String key, long limit, Duration period) {
+        if (limit <= 0L) {
+            throw new IllegalArgumentException("The rate limit must be positive");
+        }
+        long periodNanos = period.toNanos();
+        long interval = Math.max(1L, periodNanos / limit);
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0L ? arrival : now) + interval;
+            if (next - now > periodNanos) {
+                return new Probe(false, 0L, arrival - now, next - now - periodNanos);
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return new Probe(true, (periodNanos - (next - now)) / interval, next - now, 0L);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A bucket whose theoretical arrival time is in the past is full, so removing it does not change
+     * the outcome of the next request.
+     */
+    @Override
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0L);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The buckets keep the calls already made, but no client has to wait for longer than the new
+     * period.
+     */
+    @Override
+    public void quotaChanged(long limit, Duration period) {
+        long latest = System.nanoTime() + period.toNanos();
+        buckets.values().forEach(
+            bucket -> bucket.accumulateAndGet(latest, (arrival, max) -> arrival - max > 0L ? max : arrival));
+        evictIdleBuckets();
+    }
+
+    /**
+     * @return the number of buckets currently held.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
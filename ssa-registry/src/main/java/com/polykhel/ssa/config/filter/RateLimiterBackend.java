@@ -0,0 +1,59 @@
+package com.polykhel.ssa.config.filter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Storage of the token buckets used by {@link RateLimitingFilter}.
+ * <p>
+ * The gateway uses {@link InMemoryRateLimiterBackend} by default. Declare a bean of this type to
+ * share quotas between several registry nodes.
+ */
+public interface RateLimiterBackend {
+
+    /**
+     * Try to take one token from the bucket of the given key.
+     *
+     * @param key    the bucket key.
+     * @param limit  the bucket capacity, refilled over {@code period}.
+     * @param period the time needed to refill an empty bucket.
+     * @return the outcome of the attempt.
+     */
+    Probe tryConsume(String key, long limit, Duration period);
+
+    /**
+     * Drop the buckets that have been idle long enough to be full again. Called periodically by the
+     * gateway; backends that expire entries by themselves can ignore it.
+     */
+    default void evictIdleBuckets() {
+    }
+
+    /**
+     * Called when the gateway quota changes, so that the backend can adapt the existing buckets.
+     *
+     * @param limit  the new bucket capacity.
+     * @param period the new time needed to refill an empty bucket.
+     */
+    default void quotaChanged(long limit, Duration period) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    final class Probe {
+        private final boolean consumed;
+
+        private final long remainingTokens;
+
+        /**
+         * Nanoseconds until the bucket is full again.
+         */
+        private final long nanosToReset;
+
+        /**
+         * Nanoseconds until the next token is available, {@code 0} when one was consumed.
+         */
+        private final long nanosToWaitForRefill;
+    }
+}
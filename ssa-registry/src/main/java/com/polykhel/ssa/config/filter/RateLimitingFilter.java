@@ -0,0 +1,163 @@
+package com.polykhel.ssa.config.filter;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.config.PropertiesChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PRE_TYPE;
+
+/**
+ * Zuul filter for limiting the number of HTTP calls per client.
+ * <p>
+ * Authenticated requests are limited per user, anonymous requests per client IP address. Once a
+ * client has used its {@code core.gateway.rate-limiting.limit} calls for the configured duration,
+ * the gateway answers {@code 429 Too Many Requests} without proxying the call. The quota is read
+ * once, and again only when its properties change.
+ */
+@Slf4j
+public class RateLimitingFilter extends ZuulFilter {
+
+    public static final String RATE_LIMIT_LIMIT_HEADER = "X-Rate-Limit-Limit";
+
+    public static final String RATE_LIMIT_REMAINING_HEADER = "X-Rate-Limit-Remaining";
+
+    public static final String RATE_LIMIT_RESET_HEADER = "X-Rate-Limit-Reset";
+
+    private final CoreProperties properties;
+
+    private final RateLimiterBackend backend;
+
+    private volatile Quota quota;
+
+    public RateLimitingFilter(CoreProperties properties, RateLimiterBackend backend) {
+        this.properties = properties;
+        this.backend = backend;
+        this.quota = new Quota(properties.getGateway().getRateLimiting());
+    }
+
+    @Override
+    public String filterType() {
+        return PRE_TYPE;
+    }
+
+    @Override
+    public int filterOrder() {
+        return 10;
+    }
+
+    /**
+     * Requests already rejected by an earlier filter, such as the {@link AccessControlFilter}, do not
+     * use the quota.
+     */
+    @Override
+    public boolean shouldFilter() {
+        return properties.getGateway().getRateLimiting().isEnabled()
+            && RequestContext.getCurrentContext().sendZuulResponse();
+    }
+
+    @Override
+    public Object run() {
+        Quota quota = this.quota;
+        RequestContext context = RequestContext.getCurrentContext();
+
+        RateLimiterBackend.Probe probe;
+        try {
+            probe = backend.tryConsume(getClientKey(context), quota.limit, quota.period);
+        } catch (RuntimeException e) {
+            // Do not turn a rate limiter outage into a gateway outage
+            log.warn("Rate Limiting: could not check the quota, letting the request through", e);
+            return null;
+        }
+
+        context.addZuulResponseHeader(RATE_LIMIT_LIMIT_HEADER, quota.limitHeader);
+        context.addZuulResponseHeader(
+            RATE_LIMIT_REMAINING_HEADER, String.valueOf(probe.getRemainingTokens()));
+        context.addZuulResponseHeader(
+            RATE_LIMIT_RESET_HEADER, String.valueOf(toSeconds(probe.getNanosToReset())));
+        if (!probe.isConsumed()) {
+            log.debug("Rate Limiting: rejected call on {}", context.getRequest().getRequestURI());
+            context.addZuulResponseHeader(
+                HttpHeaders.RETRY_AFTER, String.valueOf(toSeconds(probe.getNanosToWaitForRefill())));
+            context.setResponseStatusCode(HttpStatus.TOO_MANY_REQUESTS.value());
+            context.setSendZuulResponse(false);
+        }
+        return null;
+    }
+
+    /**
+     * Apply a new limit or duration to the existing buckets, instead of resetting the quotas.
+     */
+    @EventListener
+    public void onPropertiesChanged(PropertiesChangedEvent event) {
+        if (event.isChanged("core.gateway.rate-limiting")) {
+            updateQuota();
+        }
+    }
+
+    /**
+     * A full refresh rebinds all the properties.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onRefreshScopeRefreshed() {
+        updateQuota();
+    }
+
+    /**
+     * Periodically drop the buckets of clients that have stopped calling the gateway.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        backend.evictIdleBuckets();
+    }
+
+    private synchronized void updateQuota() {
+        Quota changed = new Quota(properties.getGateway().getRateLimiting());
+        if (changed.limit != quota.limit || !changed.period.equals(quota.period)) {
+            log.info("Rate Limiting: quota changed to {} calls per {}", changed.limit, changed.period);
+            quota = changed;
+            backend.quotaChanged(changed.limit, changed.period);
+        }
+    }
+
+    /**
+     * The client is the authenticated user if there is one, otherwise its IP address.
+     */
+    private String getClientKey(RequestContext context) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null
+            && authentication.isAuthenticated()
+            && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + context.getRequest().getRemoteAddr();
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static final class Quota {
+        private final long limit;
+        private final Duration period;
+        private final String limitHeader;
+
+        private Quota(CoreProperties.Gateway.RateLimiting rateLimiting) {
+            this.limit = rateLimiting.getLimit();
+            this.period = Duration.ofSeconds(rateLimiting.getDurationInSeconds());
+            this.limitHeader = String.valueOf(limit);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.polykhel.ssa.config.filter;
+
+import lombok.Getter;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of the gateway routes and their authorized microservices endpoints.
+ * <p>
+ * Route prefixes and endpoints are stored in character tries, so a request URI is matched in a
+ * single pass over its characters, without allocating, whatever the number of routes.
+ */
+final class RouteAccessIndex {
+
+    @Getter
+    private final long version;
+
+    private final Node<RouteRule> routes = new Node<>();
+
+    private RouteAccessIndex(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Build the index.
+     *
+     * @param version                          version of the routes the index is built from.
+     * @param routes                           the routes, in matching order.
+     * @param authorizedMicroservicesEndpoints the authorized endpoints, by service name.
+     * @return the index.
+     */
+    static RouteAccessIndex build(
+        long version, Collection<Route> routes, Map<String, List<String>> authorizedMicroservicesEndpoints) {
+        RouteAccessIndex index = new RouteAccessIndex(version);
+        int order = 0;
+        for (Route route : routes) {
+            String fullPath = route.getFullPath();
+            if (fullPath.length() < 3) {
+                continue;
+            }
+            Node<String> endpoints = null;
+            List<String> authorizedEndpoints = authorizedMicroservicesEndpoints.get(route.getId());
+            if (authorizedEndpoints != null) {
+                endpoints = new Node<>();
+                for (String endpoint : authorizedEndpoints) {
+                    Node<String> node = endpoints.insert(endpoint);
+                    if (node.value == null) {
+                        node.value = endpoint;
+                    }
+                }
+            }
+            // remove the "**" at the end of the route URL
+            Node<RouteRule> node = index.routes.insert(fullPath.substring(0, fullPath.length() - 2));
+            if (node.value == null) {
+                // remove the "/**" at the end of the route URL for the endpoints
+                node.value =
+                    new RouteRule(
+                        route.getId(), order, fullPath.substring(0, fullPath.length() - 3), endpoints);
+            }
+            order++;
+        }
+        return index;
+    }
+
+    /**
+     * Find the first route, in route order, whose prefix matches the request URI.
+     *
+     * @param requestUri the request URI.
+     * @param offset     index of the first character after the context path.
+     * @return the matching route, or {@code null}.
+     */
+    RouteRule match(String requestUri, int offset) {
+        RouteRule match = null;
+        Node<RouteRule> node = routes;
+        for (int i = offset; node != null; i++) {
+            if (node.value != null && (match == null || node.value.order < match.order)) {
+                match = node.value;
+            }
+            node = i < requestUri.length() ? node.child(requestUri.charAt(i)) : null;
+        }
+        return match;
+    }
+
+    static final class RouteRule {
+        @Getter
+        private final String serviceName;
+        private final int order;
+        @Getter
+        private final String basePath;
+        private final Node<String> endpoints;
+
+        private RouteRule(String serviceName, int order, String basePath, Node<String> endpoints) {
+            this.serviceName = serviceName;
+            this.order = order;
+            this.basePath = basePath;
+            this.endpoints = endpoints;
+        }
+
+        boolean hasAccessControlPolicy() {
+            return endpoints != null;
+        }
+
+        /**
+         * Find an authorized endpoint that the request URI starts with.
+         *
+         * @param requestUri the request URI.
+         * @param offset     index of the first character after the context path.
+         * @return the matching endpoint, or {@code null}.
+         */
+        String matchEndpoint(String requestUri, int offset) {
+            Node<String> node = endpoints;
+            for (int i = offset + basePath.length(); node != null; i++) {
+                if (node.value != null) {
+                    return node.value;
+                }
+                node = i < requestUri.length() ? node.child(requestUri.charAt(i)) : null;
+            }
+            return null;
+        }
+    }
+
+    private static final class Node<V> {
+        private char[] keys = new char[0];
+        @SuppressWarnings("unchecked")
+        private Node<V>[] children = new Node[0];
+        private V value;
+
+        private Node<V> child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Node<V> insert(String path) {
+            Node<V> node = this;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.getOrAddChild(path.charAt(i));
+            }
+            return node;
+        }
+
+        private Node<V> getOrAddChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node<V>[] newChildren = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            Node<V> child = new Node<>();
+            newKeys[at] = c;
+            newChildren[at] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
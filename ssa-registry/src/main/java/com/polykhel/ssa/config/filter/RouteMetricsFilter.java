@@ -0,0 +1,204 @@
+package com.polykhel.ssa.config.filter;
+
+import com.netflix.zuul.ZuulFilter;
+import com.netflix.zuul.context.RequestContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.*;
+
+/**
+ * Zuul filter measuring where the time of a proxied request is spent.
+ * <p>
+ * One instance is registered per {@link Stage}: the first three only timestamp the request
+ * context when a Zuul phase starts, the last one records, per route, the {@code pre} (gateway
+ * filters), {@code upstream} (route filters, from connecting to the backend to receiving its
+ * response headers), {@code post} (streaming the response back) and {@code total} durations, and
+ * the upstream response size.
+ */
+@Slf4j
+public class RouteMetricsFilter extends ZuulFilter {
+
+    public static final String ROUTE_REQUESTS_METRIC = "gateway.route.requests";
+
+    public static final String ROUTE_RESPONSE_SIZE_METRIC = "gateway.route.response.size";
+
+    private final Stage stage;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ZuulProperties zuulProperties;
+
+    private final RouteLocator routeLocator;
+
+    private final Map<String, RouteMeters> routeMeters = new ConcurrentHashMap<>();
+
+    public RouteMetricsFilter(
+        Stage stage, MeterRegistry meterRegistry, ZuulProperties zuulProperties, RouteLocator routeLocator) {
+        this.stage = stage;
+        this.meterRegistry = meterRegistry;
+        this.zuulProperties = zuulProperties;
+        this.routeLocator = routeLocator;
+    }
+
+    @Override
+    public String filterType() {
+        return stage.filterType;
+    }
+
+    @Override
+    public int filterOrder() {
+        return stage.filterOrder;
+    }
+
+    @Override
+    public boolean shouldFilter() {
+        RequestContext context = RequestContext.getCurrentContext();
+        switch (stage) {
+            case START:
+                return true;
+            case UPSTREAM:
+                return context.sendZuulResponse() && context.containsKey(Stage.START.key);
+            default:
+                return context.get(PROXY_KEY) != null && context.containsKey(Stage.START.key);
+        }
+    }
+
+    @Override
+    public Object run() {
+        RequestContext context = RequestContext.getCurrentContext();
+        long now = System.nanoTime();
+        if (stage != Stage.END) {
+            context.set(stage.key, now);
+            return null;
+        }
+
+        long start = (long) context.get(Stage.START.key);
+        Long upstreamStart = (Long) context.get(Stage.UPSTREAM.key);
+        Long responseStart = (Long) context.get(Stage.RESPONSE.key);
+        if (responseStart == null) {
+            responseStart = now;
+        }
+        RouteMeters meters = routeMeters.computeIfAbsent((String) context.get(PROXY_KEY), this::createMeters);
+        meters.pre.record((upstreamStart != null ? upstreamStart : responseStart) - start, TimeUnit.NANOSECONDS);
+        if (upstreamStart != null) {
+            meters.upstream.record(responseStart - upstreamStart, TimeUnit.NANOSECONDS);
+        }
+        meters.post.record(now - responseStart, TimeUnit.NANOSECONDS);
+        meters.total.record(now - start, TimeUnit.NANOSECONDS);
+        Long contentLength = context.getOriginContentLength();
+        if (contentLength != null) {
+            meters.responseSize.record(contentLength);
+        }
+        return null;
+    }
+
+    /**
+     * Drop the meters of the routes that no longer exist, e.g. after an instance has been
+     * unregistered. The routes are read from the {@link RouteLocator}, which also holds the
+     * discovery routes keyed by service id.
+     */
+    @EventListener
+    public void onRoutesRefreshed(RoutesRefreshedEvent event) {
+        if (routeMeters.isEmpty()) {
+            return;
+        }
+        Set<String> routeIds = routeLocator.getRoutes().stream().map(Route::getId).collect(Collectors.toSet());
+        routeMeters.entrySet().removeIf(entry -> {
+            if (routeIds.contains(entry.getKey())) {
+                return false;
+            }
+            log.debug("Removing metrics of route '{}'", entry.getKey());
+            entry.getValue().remove(meterRegistry);
+            return true;
+        });
+    }
+
+    private RouteMeters createMeters(String routeId) {
+        Tags tags = Tags.of("route", routeId, "service", getServiceName(routeId));
+        return new RouteMeters(meterRegistry, tags);
+    }
+
+    /**
+     * Routes created by the {@code ZuulUpdaterService} are mapped on {@code /<service>/<instance>/**}.
+     */
+    private String getServiceName(String routeId) {
+        ZuulProperties.ZuulRoute route = zuulProperties.getRoutes().get(routeId);
+        if (route == null || route.getPath() == null) {
+            return routeId;
+        }
+        String path = route.getPath();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end > start ? path.substring(start, end) : routeId;
+    }
+
+    public enum Stage {
+        START(PRE_TYPE, Integer.MIN_VALUE),
+        UPSTREAM(ROUTE_TYPE, Integer.MIN_VALUE),
+        RESPONSE(POST_TYPE, Integer.MIN_VALUE),
+        END(POST_TYPE, SEND_RESPONSE_FILTER_ORDER + 1);
+
+        private final String filterType;
+
+        private final int filterOrder;
+
+        private final String key;
+
+        Stage(String filterType, int filterOrder) {
+            this.filterType = filterType;
+            this.filterOrder = filterOrder;
+            this.key = "routeMetrics." + name();
+        }
+    }
+
+    private static final class RouteMeters {
+        private final Timer pre;
+        private final Timer upstream;
+        private final Timer post;
+        private final Timer total;
+        private final DistributionSummary responseSize;
+
+        private RouteMeters(MeterRegistry registry, Tags tags) {
+            this.pre = timer(registry, tags, "pre");
+            this.upstream = timer(registry, tags, "upstream");
+            this.post = timer(registry, tags, "post");
+            this.total = timer(registry, tags, "total");
+            this.responseSize =
+                DistributionSummary.builder(ROUTE_RESPONSE_SIZE_METRIC)
+                    .tags(tags)
+                    .baseUnit("bytes")
+                    .description("Size of the responses returned by the route")
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, Tags tags, String phase) {
+            return Timer.builder(ROUTE_REQUESTS_METRIC)
+                .tags(tags)
+                .tag("phase", phase)
+                .description("Time spent in each phase of the requests proxied by the route")
+                .register(registry);
+        }
+
+        private void remove(MeterRegistry registry) {
+            for (Meter meter : new Meter[]{pre, upstream, post, total, responseSize}) {
+                registry.remove(meter);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.polykhel.ssa.config.filter;
+
+import com.polykhel.ssa.config.metric.MetricsSection;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code routes} category of the metrics endpoint: the per phase durations and the response size
+ * recorded by the {@link RouteMetricsFilter}, by route.
+ */
+public class RouteMetricsSection implements MetricsSection {
+
+    @Override
+    public String getName() {
+        return "routes";
+    }
+
+    @Override
+    public Accumulator newAccumulator() {
+        return new RoutesAccumulator();
+    }
+
+    private static final class RoutesAccumulator implements Accumulator {
+        private final Map<String, Map<String, Object>> routes = new HashMap<>();
+
+        @Override
+        public void add(Meter meter) {
+            String name = meter.getId().getName();
+            if (meter instanceof Timer && name.equals(RouteMetricsFilter.ROUTE_REQUESTS_METRIC)) {
+                route(meter).put(meter.getId().getTag("phase"), timerStats((Timer) meter));
+            } else if (meter instanceof DistributionSummary
+                && name.equals(RouteMetricsFilter.ROUTE_RESPONSE_SIZE_METRIC)) {
+                DistributionSummary summary = (DistributionSummary) meter;
+                Map<String, Number> stats = new HashMap<>();
+                stats.put("count", summary.count());
+                stats.put("max", summary.max());
+                stats.put("mean", summary.mean());
+                route(meter).put("responseSize", Collections.unmodifiableMap(stats));
+            }
+        }
+
+        @Override
+        public Map<String, ?> result() {
+            routes.replaceAll((route, stats) -> Collections.unmodifiableMap(stats));
+            return Collections.unmodifiableMap(routes);
+        }
+
+        private Map<String, Object> route(Meter meter) {
+            return routes.computeIfAbsent(meter.getId().getTag("route"), k -> {
+                Map<String, Object> route = new HashMap<>();
+                route.put("service", meter.getId().getTag("service"));
+                return route;
+            });
+        }
+
+        private static Map<String, Number> timerStats(Timer timer) {
+            Map<String, Number> stats = new HashMap<>();
+            stats.put("count", timer.count());
+            stats.put("max", timer.max(TimeUnit.MILLISECONDS));
+            stats.put("totalTime", timer.totalTime(TimeUnit.MILLISECONDS));
+            stats.put("mean", timer.mean(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                stats.put(String.valueOf(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS));
+            }
+            return Collections.unmodifiableMap(stats);
+        }
+    }
+}
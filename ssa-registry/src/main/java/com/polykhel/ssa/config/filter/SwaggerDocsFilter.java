@@ -1,25 +1,49 @@
 package com.polykhel.ssa.config.filter;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.netflix.util.Pair;
 import com.netflix.zuul.context.RequestContext;
-import io.micrometer.core.instrument.util.IOUtils;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
 import org.springframework.cloud.netflix.zuul.filters.post.SendResponseFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
  * Zuul filter to rewrite microservices Swagger base-path url
+ * <p>
+ * The upstream document is copied token by token, replacing only the top-level {@code basePath},
+ * and rewritten documents are cached per route until the upstream {@code ETag} changes. Only
+ * successful responses are rewritten: a {@code 304 Not Modified} or an error is passed through
+ * untouched.
  */
 @Slf4j
 public class SwaggerDocsFilter extends SendResponseFilter {
     private static final String SWAGGER_DEFAULT_URL = "/v2/api-docs";
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final String BASE_PATH = "basePath";
+    private static final int MAX_CACHED_DOCS = 64;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Map<String, CachedDocs> cache =
+        new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDocs> eldest) {
+                return size() > MAX_CACHED_DOCS;
+            }
+        };
 
     public SwaggerDocsFilter() {
         super(new ZuulProperties());
@@ -27,10 +51,10 @@ public class SwaggerDocsFilter extends SendResponseFilter {
 
     public static byte[] gzipData(String content) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        PrintWriter gzip = new PrintWriter(new GZIPOutputStream(bos));
-        gzip.print(content);
-        gzip.flush();
-        gzip.close();
+        try (Writer gzip =
+                 new OutputStreamWriter(new GZIPOutputStream(bos), StandardCharsets.UTF_8)) {
+            gzip.write(content);
+        }
         return bos.toByteArray();
     }
 
@@ -45,14 +69,13 @@ public class SwaggerDocsFilter extends SendResponseFilter {
     }
 
     /**
-     * Filter requests to microservices Swagger docs.
+     * Filter the successful responses of microservices Swagger docs.
      */
     @Override
     public boolean shouldFilter() {
-        return RequestContext.getCurrentContext()
-            .getRequest()
-            .getRequestURI()
-            .endsWith(SWAGGER_DEFAULT_URL);
+        RequestContext context = RequestContext.getCurrentContext();
+        return context.getRequest().getRequestURI().endsWith(SWAGGER_DEFAULT_URL) &&
+            HttpStatus.Series.resolve(context.getResponseStatusCode()) == HttpStatus.Series.SUCCESSFUL;
     }
 
     @Override
@@ -61,37 +84,120 @@ public class SwaggerDocsFilter extends SendResponseFilter {
 
         context.getResponse().setCharacterEncoding("UTF-8");
 
-        String rewrittenResponse = rewriteBasePath(context);
-        if (context.getResponseGZipped()) {
-            try {
-                context.setResponseDataStream(new ByteArrayInputStream(gzipData(rewrittenResponse)));
-            } catch (IOException e) {
-                log.error("Swagger-docs filter error", e);
-            }
+        String requestUri = context.getRequest().getRequestURI();
+        boolean gzipped = context.getResponseGZipped();
+        String etag = getUpstreamETag(context);
+
+        byte[] rewrittenResponse = getCachedDocs(requestUri, etag, gzipped);
+        if (rewrittenResponse != null) {
+            log.debug("Swagger-docs: serving cached docs for {} (ETag {})", requestUri, etag);
+            discard(context.getResponseDataStream());
         } else {
-            context.setResponseBody(rewrittenResponse);
+            rewrittenResponse = rewriteBasePath(context, requestUri, gzipped);
+            if (rewrittenResponse == null) {
+                return null;
+            }
+            if (etag != null) {
+                synchronized (cache) {
+                    cache.put(requestUri, new CachedDocs(etag, gzipped, rewrittenResponse));
+                }
+            }
         }
+        context.setResponseDataStream(new ByteArrayInputStream(rewrittenResponse));
+        context.setOriginContentLength((long) rewrittenResponse.length);
         return null;
     }
 
-    @SuppressWarnings("unchecked")
-    private String rewriteBasePath(RequestContext context) {
-        InputStream responseDataStream = context.getResponseDataStream();
-        String requestUri = RequestContext.getCurrentContext().getRequest().getRequestURI();
-        try {
-            if (context.getResponseGZipped()) {
-                responseDataStream = new GZIPInputStream(context.getResponseDataStream());
-            }
-            String response = IOUtils.toString(responseDataStream, StandardCharsets.UTF_8);
-            LinkedHashMap<String, Object> map = this.mapper.readValue(response, LinkedHashMap.class);
-
-            String basePath = requestUri.replace(SWAGGER_DEFAULT_URL, "");
-            map.put("basePath", basePath);
-            log.debug("Swagger-docs: rewritten Base URL with correct micro-service route: {}", basePath);
-            return mapper.writeValueAsString(map);
+    private byte[] rewriteBasePath(RequestContext context, String requestUri, boolean gzipped) {
+        String basePath = requestUri.replace(SWAGGER_DEFAULT_URL, "");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+        try (InputStream in =
+                 gzipped
+                     ? new GZIPInputStream(context.getResponseDataStream())
+                     : context.getResponseDataStream();
+             OutputStream out = gzipped ? new GZIPOutputStream(bos) : bos;
+             JsonParser parser = jsonFactory.createParser(in);
+             JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            copyWithBasePath(parser, generator, basePath);
         } catch (IOException e) {
             log.error("Swagger-docs filter error", e);
+            return null;
+        }
+        log.debug("Swagger-docs: rewritten Base URL with correct micro-service route: {}", basePath);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Copy the document, replacing the value of the top-level {@code basePath} field, or appending
+     * it if the document has none. Nested objects are copied without being inspected.
+     */
+    private void copyWithBasePath(JsonParser parser, JsonGenerator generator, String basePath)
+        throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Swagger docs must be a JSON object");
+        }
+        generator.writeStartObject();
+        boolean basePathWritten = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (BASE_PATH.equals(parser.getCurrentName())) {
+                parser.nextToken();
+                parser.skipChildren();
+                generator.writeStringField(BASE_PATH, basePath);
+                basePathWritten = true;
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Unexpected token in Swagger docs");
+        }
+        if (!basePathWritten) {
+            generator.writeStringField(BASE_PATH, basePath);
+        }
+        generator.writeEndObject();
+    }
+
+    private byte[] getCachedDocs(String requestUri, String etag, boolean gzipped) {
+        if (etag == null) {
+            return null;
+        }
+        CachedDocs cached;
+        synchronized (cache) {
+            cached = cache.get(requestUri);
+        }
+        if (cached != null && cached.gzipped == gzipped && cached.etag.equals(etag)) {
+            return cached.content;
         }
         return null;
     }
+
+    private String getUpstreamETag(RequestContext context) {
+        List<Pair<String, String>> headers = context.getOriginResponseHeaders();
+        if (headers != null) {
+            for (Pair<String, String> header : headers) {
+                if (HttpHeaders.ETAG.equalsIgnoreCase(header.first())) {
+                    return header.second();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void discard(InputStream responseDataStream) {
+        if (responseDataStream == null) {
+            return;
+        }
+        try {
+            responseDataStream.close();
+        } catch (IOException e) {
+            log.debug("Swagger-docs: could not close upstream response", e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class CachedDocs {
+        private final String etag;
+        private final boolean gzipped;
+        private final byte[] content;
+    }
 }
@@ -1,55 +1,143 @@
 package com.polykhel.ssa.service;
 
+import com.polykhel.ssa.async.BulkheadTaskExecutor;
+import com.polykhel.ssa.async.CategorizedTaskExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.polykhel.ssa.utils.constants.ProfileConstants.SPRING_PROFILE_K8S;
 import static com.sun.nio.file.SensitivityWatchEventModifier.HIGH;
 import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
 import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 
 /**
  * Kubernetes (K8s) cloud config refresher service.
+ * <p>
+ * Kubernetes updates a mounted ConfigMap by writing a new hidden directory and swapping the
+ * {@code ..data} symbolic link, which produces a burst of file system events. The events are
+ * debounced until the directory has been quiet for {@code k8s.config.debounce-in-millis}, then the
+ * SHA-256 digest of each configuration file is compared with the previous one. Only the files whose
+ * content changed are parsed, and only the properties that were added, removed or changed are
+ * applied by the {@link ScopedRefreshService}.
+ * <p>
+ * In the {@code virtual} async mode, the watcher runs in the {@code config-refresh} bulkhead instead
+ * of its own platform thread.
  */
 @Service
 @Profile(SPRING_PROFILE_K8S)
 @Slf4j
 public class CloudConfigRefreshService {
 
-    private final ContextRefresher refresher;
+    private static final String HIDDEN_PREFIX = "..";
+
+    private static final String PROFILES_PROPERTY = "spring.profiles";
+
+    private static final String APPLICATION_NAME_PROPERTY = "spring.application.name";
+
+    private static final String BOOTSTRAP_CONFIG_NAME = "bootstrap";
+
+    private static final String APPLICATION_CONFIG_NAME = "application";
+
+    private final ScopedRefreshService refresher;
+
+    private final Environment environment;
 
     private final String configPath;
 
+    private final long debounceMillis;
+
+    private final Timer refreshTimer;
+
+    private final Counter unchangedCounter;
+
+    private final Counter failedCounter;
+
+    private final Map<Path, String> digests = new HashMap<>();
+
+    private final Map<Path, Map<String, String>> properties = new HashMap<>();
+
+    private final ObjectProvider<BulkheadTaskExecutor> bulkheadTaskExecutor;
+
     private ScheduledExecutorService taskExecutor;
 
+    private FutureTask<Void> watcher;
+
     /**
      * Constructor
      *
-     * @param refresher  ContextRefresher
-     * @param configPath String
+     * @param refresher            ScopedRefreshService
+     * @param environment          Environment
+     * @param configPath           String
+     * @param debounceMillis       long
+     * @param meterRegistry        MeterRegistry
+     * @param bulkheadTaskExecutor BulkheadTaskExecutor of the {@code virtual} async mode
      */
     public CloudConfigRefreshService(
-        ContextRefresher refresher, @Value("${k8s.config.path}") String configPath) {
+        ScopedRefreshService refresher, Environment environment, @Value("${k8s.config.path}") String configPath,
+        @Value("${k8s.config.debounce-in-millis:2000}") long debounceMillis, MeterRegistry meterRegistry,
+        ObjectProvider<BulkheadTaskExecutor> bulkheadTaskExecutor) {
         this.refresher = refresher;
+        this.bulkheadTaskExecutor = bulkheadTaskExecutor;
+        this.environment = environment;
         this.configPath = configPath;
+        this.debounceMillis = debounceMillis;
+        this.refreshTimer = Timer.builder("config.refresh")
+            .description("Refreshes of the context after a ConfigMap change")
+            .register(meterRegistry);
+        this.unchangedCounter = Counter.builder("config.refresh.skipped")
+            .tag("reason", "unchanged")
+            .description("ConfigMap changes without any changed property")
+            .register(meterRegistry);
+        this.failedCounter = Counter.builder("config.refresh.skipped")
+            .tag("reason", "failed")
+            .description("ConfigMap changes that could not be read")
+            .register(meterRegistry);
     }
 
     /**
@@ -60,6 +148,22 @@ public class CloudConfigRefreshService {
     @PostConstruct
     public void configMapWatcher() {
         if (getConfigPath() != null && !getConfigPath().isEmpty()) {
+            watcher = new FutureTask<>(
+                () -> {
+                    try {
+                        configMapRefreshContext();
+                    } catch (IOException ex) {
+                        log.error("Unable to refresh K8s ConfigMap", ex);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                null);
+            BulkheadTaskExecutor bulkhead = bulkheadTaskExecutor.getIfAvailable();
+            if (bulkhead != null) {
+                bulkhead.execute(CategorizedTaskExecutor.CONFIG_REFRESH_CATEGORY, watcher);
+                return;
+            }
             taskExecutor =
                 Executors.newSingleThreadScheduledExecutor(
                     job -> {
@@ -67,14 +171,7 @@ public class CloudConfigRefreshService {
                         thread.setDaemon(true);
                         return thread;
                     });
-            taskExecutor.execute(
-                () -> {
-                    try {
-                        configMapRefreshContext();
-                    } catch (IOException | InterruptedException ex) {
-                        log.error("Unable to refresh K8s ConfigMap", ex);
-                    }
-                });
+            taskExecutor.execute(watcher);
         } else {
             log.error(
                 "ConfigMap directory path not specified. Specify value for the the environment variable k8s.config.path");
@@ -82,97 +179,284 @@ public class CloudConfigRefreshService {
     }
 
     /**
-     * {@code WatchService} object to monitor K8s configMap path. Mounted configMap path will be
-     * recursively registered with the {@code WatchService} instance to get notified for interested
-     * events.
+     * {@code WatchService} object to monitor K8s configMap path. The mounted configMap path and its
+     * visible sub-directories are registered with the {@code WatchService} instance, and every burst
+     * of events leads to a single check of the configuration files.
      *
      * @throws IOException          IOException
      * @throws InterruptedException InterruptedException
      */
     private void configMapRefreshContext() throws IOException, InterruptedException {
-        List<File> fileList = new ArrayList<>();
-        List<Integer> hashList = new ArrayList<>();
-        WatchService watcherService = FileSystems.getDefault().newWatchService();
         Path dirPath = Paths.get(getConfigPath());
+        try (WatchService watcherService = FileSystems.getDefault().newWatchService()) {
+            Set<Path> failedFiles = new HashSet<>();
+            scan(dirPath, watcherService, true, failedFiles);
+            if (!failedFiles.isEmpty()) {
+                failedCounter.increment(failedFiles.size());
+            }
+            while (true) {
+                WatchKey key = watcherService.take();
+                if (!drain(key)) {
+                    log.error("Unable to reset the watcher service. Try restarting the running instance");
+                    break;
+                }
+                // wait until the directory has been quiet for the whole debounce window
+                while ((key = watcherService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                checkForChanges(dirPath, watcherService);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (watcher != null) {
+            watcher.cancel(true);
+        }
+        if (taskExecutor != null) {
+            taskExecutor.shutdownNow();
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        if (log.isDebugEnabled()) {
+            key.pollEvents().forEach(
+                event -> log.debug("Event detected: " + event.kind().name() + ", Updated File: " + event.context()));
+        } else {
+            key.pollEvents();
+        }
+        return key.reset();
+    }
+
+    /**
+     * Never throws, so that a bad ConfigMap update does not stop the watcher.
+     */
+    private void checkForChanges(Path dirPath, WatchService watcherService) {
+        Timer.Sample sample = Timer.start();
+        Set<String> changedKeys;
+        Set<Path> failedFiles = new HashSet<>();
+        try {
+            changedKeys = scan(dirPath, watcherService, false, failedFiles);
+        } catch (IOException | RuntimeException e) {
+            failedCounter.increment();
+            log.warn("Unable to read the K8s ConfigMap: {}", e.getMessage());
+            return;
+        }
+        if (!failedFiles.isEmpty()) {
+            failedCounter.increment(failedFiles.size());
+        }
+        if (changedKeys.isEmpty()) {
+            if (failedFiles.isEmpty()) {
+                unchangedCounter.increment();
+            }
+            log.debug("Hashed content unchanged. Ignore and continue");
+            return;
+        }
+        log.debug("File system updated, changed properties: {}", changedKeys);
+        try {
+            Set<String> reboundBeans = refresher.refresh(mergeProperties(), changedKeys, Paths.get(configPath));
+            sample.stop(refreshTimer);
+            log.debug("Properties beans {} refreshed for ConfigMap update", reboundBeans);
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.error("Unable to apply the K8s ConfigMap update {}", changedKeys, e);
+        }
+    }
+
+    /**
+     * Digest the configuration files, and parse the ones whose content changed.
+     *
+     * @param initial     {@code true} on the first scan, which only records the files.
+     * @param failedFiles collects the files that could not be read or parsed; they keep their previous
+     *                    properties, and are read again on the next event.
+     * @return the keys of the properties that were added, removed or changed.
+     */
+    private Set<String> scan(Path dirPath, WatchService watcherService, boolean initial, Set<Path> failedFiles)
+        throws IOException {
+        Set<Path> seen = new HashSet<>();
+        Set<String> changedKeys = new TreeSet<>();
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
         Files.walkFileTree(
             dirPath,
-            new HashSet<>() {
-                {
-                    add(FOLLOW_LINKS);
-                }
-            },
+            EnumSet.of(FOLLOW_LINKS),
             2,
             new SimpleFileVisitor<>() {
                 @Override
                 public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
                     throws IOException {
-                    log.debug("Registering" + dir + " in watcher service");
-                    dir.register(watcherService, new WatchEvent.Kind[]{ENTRY_MODIFY}, HIGH);
+                    // the visible files are links to the files of the hidden directories
+                    if (!dir.equals(dirPath) && isHidden(dir)) {
+                        return SKIP_SUBTREE;
+                    }
+                    if (initial) {
+                        log.debug("Registering " + dir + " in watcher service");
+                        dir.register(
+                            watcherService, new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE}, HIGH);
+                    }
                     return CONTINUE;
                 }
 
                 @Override
                 public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
                     throws IOException {
-                    File file = path.toFile();
-                    if (isValidConfigFile(file.getName().toLowerCase())) {
-                        log.debug("Adding file: " + file.getAbsolutePath());
-                        fileList.add(file);
-                        hashList.add(getHashValue(file));
+                    if (isHidden(path) || !isValidConfigFile(path.getFileName().toString().toLowerCase())) {
+                        return CONTINUE;
+                    }
+                    seen.add(path);
+                    String hash;
+                    Map<String, String> current;
+                    try {
+                        hash = digest(path, digest, buffer);
+                        if (hash.equals(digests.get(path))) {
+                            return CONTINUE;
+                        }
+                        log.debug("Reading file: " + path.toAbsolutePath());
+                        current = load(path);
+                    } catch (IOException | RuntimeException e) {
+                        // e.g. malformed YAML: keep the previous properties and digest, so that the
+                        // file is read again on the next event
+                        failedFiles.add(path);
+                        log.warn("Unable to read the configuration file {}: {}", path, e.getMessage());
+                        return CONTINUE;
+                    }
+                    Map<String, String> previous = properties.put(path, current);
+                    digests.put(path, hash);
+                    if (!initial) {
+                        changedKeys.addAll(diff(previous, current));
                     }
                     return CONTINUE;
                 }
             });
-        while (true) {
-            WatchKey key = watcherService.take();
-            List<WatchEvent<?>> events = key.pollEvents();
-            if (!events.isEmpty()) {
-                if (log.isDebugEnabled()) {
-                    events.forEach(event -> log.debug("Event detected: " + event.kind().name() + ", Updated File: " + event.context()));
-                }
-                Collection<Integer> activeList = fileList
-                    .stream()
-                    .map(this::getHashValue)
-                    .collect(Collectors.toList());
-                if (!hashList.containsAll(activeList)) {
-                    log.debug("File system updated. Hashed content matching failed");
-                    hashList.clear();
-                    hashList.addAll(activeList);
-                    refresher.refresh();
-                    log.debug("@RefreshScope context refreshed for ConfigMap update");
-                } else {
-                    // do nothing
-                    log.debug("Hashed content unchanged. Ignore and continue");
-                }
-                if (!key.reset()) {
-                    log.error("Unable to reset the watcher service. Try restarting the running instance");
-                    break;
+        digests.keySet().retainAll(seen);
+        for (Path removed : new HashSet<>(properties.keySet())) {
+            if (!seen.contains(removed)) {
+                changedKeys.addAll(properties.remove(removed).keySet());
+            }
+        }
+        return changedKeys;
+    }
+
+    /**
+     * Streaming SHA-256 digest of the file content, with a reused buffer.
+     */
+    private static String digest(Path path, MessageDigest digest, byte[] buffer) throws IOException {
+        digest.reset();
+        try (InputStream input = Files.newInputStream(path)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Flatten the properties of the documents of the file that apply to the active profiles, the
+     * later documents overriding the earlier ones.
+     */
+    private Map<String, String> load(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        PropertySourceLoader loader = name.endsWith(".properties")
+            ? new PropertiesPropertySourceLoader() : new YamlPropertySourceLoader();
+        Map<String, String> values = new HashMap<>();
+        for (PropertySource<?> source : loader.load(path.toString(), new FileSystemResource(path))) {
+            if (source instanceof EnumerablePropertySource && isActive(source)) {
+                EnumerablePropertySource<?> enumerable = (EnumerablePropertySource<?>) source;
+                for (String key : enumerable.getPropertyNames()) {
+                    values.put(key, String.valueOf(enumerable.getProperty(key)));
                 }
-            } else {
-                // do nothing
-                log.debug("Event list is empty. Ignore and continue.");
             }
         }
+        return values;
     }
 
-    @PreDestroy
-    public void destroy() {
-        if (taskExecutor != null) {
-            taskExecutor.shutdown();
+    private boolean isActive(PropertySource<?> source) {
+        Object profiles = source.getProperty(PROFILES_PROPERTY);
+        return profiles == null ||
+            environment.acceptsProfiles(Profiles.of(StringUtils.commaDelimitedListToStringArray(profiles.toString())));
+    }
+
+    /**
+     * Merge the properties of the files that Spring Boot would load for the active profiles, in its
+     * order: the {@code application} files override the {@code bootstrap} ones, and the
+     * profile-specific files such as {@code application-k8s.yml} override the plain ones, the last
+     * active profile winning. The files of the inactive profiles are skipped.
+     */
+    private Map<String, String> mergeProperties() {
+        String[] activeProfiles = environment.getActiveProfiles();
+        List<String> profiles = Arrays.asList(
+            activeProfiles.length > 0 ? activeProfiles : environment.getDefaultProfiles());
+        Map<Path, Integer> precedences = new HashMap<>();
+        for (Path path : properties.keySet()) {
+            int precedence = precedence(path, profiles);
+            if (precedence < 0) {
+                log.debug("Skipping the configuration file {} of an inactive profile", path);
+            } else {
+                precedences.put(path, precedence);
+            }
         }
+        List<Path> paths = precedences.keySet().stream()
+            .sorted(Comparator.comparing((Path path) -> precedences.get(path))
+                .thenComparing(path -> path.getFileName().toString()))
+            .collect(Collectors.toList());
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (Path path : paths) {
+            merged.putAll(properties.get(path));
+        }
+        return merged;
     }
 
     /**
-     * Generates hash value
-     *
-     * @param file File
-     * @return hasCode int
+     * @return the rank of the file, the higher ranks overriding the lower ones, or {@code -1} if the
+     * file belongs to an inactive profile. The files that are not named after a configuration name
+     * rank like a plain {@code application} file.
      */
-    private int getHashValue(File file) {
-        return (37 * 21
-            + (file.getAbsolutePath().hashCode()
-            + (int) (file.length() ^ (file.length() >>> 32))
-            + (int) (file.lastModified() ^ (file.lastModified() >>> 32))));
+    private int precedence(Path path, List<String> profiles) {
+        String name = StringUtils.stripFilenameExtension(path.getFileName().toString());
+        List<String> configNames = Stream.of(
+            BOOTSTRAP_CONFIG_NAME, APPLICATION_CONFIG_NAME, environment.getProperty(APPLICATION_NAME_PROPERTY))
+            .filter(StringUtils::hasText)
+            .distinct()
+            .sorted(Comparator.comparing(String::length).reversed())
+            .collect(Collectors.toList());
+        for (String configName : configNames) {
+            int base = BOOTSTRAP_CONFIG_NAME.equals(configName) ? 0 : profiles.size() + 1;
+            if (name.equals(configName)) {
+                return base;
+            }
+            if (name.startsWith(configName + "-")) {
+                int index = profiles.indexOf(name.substring(configName.length() + 1));
+                return index < 0 ? -1 : base + index + 1;
+            }
+        }
+        return profiles.size() + 1;
+    }
+
+    private static Set<String> diff(Map<String, String> previous, Map<String, String> current) {
+        Map<String, String> before = previous != null ? previous : Collections.emptyMap();
+        Set<String> keys = new HashSet<>(before.keySet());
+        keys.addAll(current.keySet());
+        keys.removeIf(key -> Objects.equals(before.get(key), current.get(key)));
+        return keys;
+    }
+
+    private static boolean isHidden(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && fileName.toString().startsWith(HIDDEN_PREFIX);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
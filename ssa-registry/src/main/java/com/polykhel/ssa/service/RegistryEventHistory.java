@@ -0,0 +1,223 @@
+package com.polykhel.ssa.service;
+
+import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.service.dto.HistoryBucketDTO;
+import com.polykhel.ssa.service.dto.RegistryEventDTO;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * History of the last registry and route changes, for incident reviews.
+ * <p>
+ * Events are stored column by column in a ring of primitive arrays, with the application, instance
+ * and status names replaced by dictionary codes, so recording an event allocates nothing once its
+ * names are known. Timestamps are kept in order, so that time ranges are found by binary search.
+ */
+@Service
+public class RegistryEventHistory {
+
+    /**
+     * Maximum number of buckets of a histogram.
+     */
+    public static final int MAX_BUCKETS = 10_000;
+
+    private static final RegistryEventDTO.Type[] TYPES = RegistryEventDTO.Type.values();
+
+    private static final int NO_CODE = -1;
+
+    private final int capacity;
+
+    private final long[] ids;
+
+    private final long[] timestamps;
+
+    private final byte[] types;
+
+    private final int[] apps;
+
+    private final int[] instances;
+
+    private final int[] statuses;
+
+    private Map<String, Integer> codes = new HashMap<>();
+
+    private List<String> names = new ArrayList<>();
+
+    /**
+     * Number of events recorded since startup, the oldest ones being overwritten.
+     */
+    private long count;
+
+    private long lastTimestamp;
+
+    public RegistryEventHistory(CoreProperties coreProperties) {
+        this.capacity = Math.max(1, coreProperties.getRegistry().getEvents().getHistorySize());
+        this.ids = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.types = new byte[capacity];
+        this.apps = new int[capacity];
+        this.instances = new int[capacity];
+        this.statuses = new int[capacity];
+    }
+
+    public synchronized void record(RegistryEventDTO event) {
+        int slot = (int) (count % capacity);
+        // clock adjustments must not break the binary search
+        lastTimestamp = Math.max(lastTimestamp, event.getTimestamp());
+        ids[slot] = event.getId();
+        timestamps[slot] = lastTimestamp;
+        types[slot] = (byte) event.getType().ordinal();
+        apps[slot] = encode(event.getAppName());
+        instances[slot] = encode(event.getInstanceId());
+        statuses[slot] = encode(event.getStatus());
+        count++;
+        // every event adds at most three names
+        if (names.size() > 3 * capacity) {
+            compactNames();
+        }
+    }
+
+    /**
+     * Find the events of a time range, oldest first.
+     *
+     * @param from    start of the range in epoch milliseconds, inclusive.
+     * @param to      end of the range in epoch milliseconds, exclusive.
+     * @param appName application of the events, or {@code null} for all of them.
+     * @param limit   maximum number of events.
+     * @return the events, without their route path and URL.
+     */
+    public synchronized List<RegistryEventDTO> find(long from, long to, String appName, int limit) {
+        List<RegistryEventDTO> events = new ArrayList<>();
+        int app = appName != null ? lookup(appName) : NO_CODE;
+        if (appName != null && app == NO_CODE) {
+            return events;
+        }
+        for (long i = firstAtOrAfter(from); i < count && events.size() < limit; i++) {
+            int slot = (int) (i % capacity);
+            if (timestamps[slot] >= to) {
+                break;
+            }
+            if (appName == null || apps[slot] == app) {
+                events.add(new RegistryEventDTO(ids[slot], TYPES[types[slot]], timestamps[slot],
+                    decode(apps[slot]), decode(instances[slot]), decode(statuses[slot]), null, null));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Count the events of a time range per type, in buckets of the same duration.
+     *
+     * @param from         start of the range in epoch milliseconds, inclusive.
+     * @param to           end of the range in epoch milliseconds, exclusive.
+     * @param bucketMillis duration of the buckets.
+     * @param appName      application of the events, or {@code null} for all of them.
+     * @return the buckets, oldest first, including the empty ones.
+     * @throws java.lang.IllegalArgumentException if there would be more than {@link #MAX_BUCKETS} buckets.
+     */
+    public List<HistoryBucketDTO> countByBucket(long from, long to, long bucketMillis, String appName) {
+        if (bucketMillis <= 0 || to <= from || (to - from - 1) / bucketMillis + 1 > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Invalid time range or bucket duration");
+        }
+        int bucketCount = (int) ((to - from - 1) / bucketMillis + 1);
+        long[] counts = new long[bucketCount * TYPES.length];
+        synchronized (this) {
+            int app = appName != null ? lookup(appName) : NO_CODE;
+            if (appName == null || app != NO_CODE) {
+                for (long i = firstAtOrAfter(from); i < count; i++) {
+                    int slot = (int) (i % capacity);
+                    if (timestamps[slot] >= to) {
+                        break;
+                    }
+                    if (appName == null || apps[slot] == app) {
+                        int bucket = (int) ((timestamps[slot] - from) / bucketMillis);
+                        counts[bucket * TYPES.length + types[slot]]++;
+                    }
+                }
+            }
+        }
+        List<HistoryBucketDTO> buckets = new ArrayList<>(bucketCount);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            int offset = bucket * TYPES.length;
+            buckets.add(new HistoryBucketDTO(from + bucket * bucketMillis,
+                Arrays.copyOfRange(counts, offset, offset + TYPES.length)));
+        }
+        return buckets;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * @return the logical index of the first event at or after the timestamp, {@code count} if none.
+     */
+    private long firstAtOrAfter(long timestamp) {
+        long low = Math.max(0, count - capacity);
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamps[(int) (middle % capacity)] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int encode(String name) {
+        if (name == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            names.add(name);
+            codes.put(name, code);
+        }
+        return code;
+    }
+
+    private String decode(int code) {
+        return code == NO_CODE ? null : names.get(code);
+    }
+
+    /**
+     * Eureka application names are upper case, but the other APIs use the lower case service id.
+     */
+    private int lookup(String appName) {
+        Integer code = codes.get(appName);
+        if (code == null) {
+            code = codes.get(appName.toUpperCase(Locale.ROOT));
+        }
+        return code != null ? code : NO_CODE;
+    }
+
+    /**
+     * Drop the names of the overwritten events, such as the ids of the instances of old deployments.
+     */
+    private void compactNames() {
+        Map<String, Integer> oldCodes = codes;
+        List<String> oldNames = names;
+        codes = new HashMap<>();
+        names = new ArrayList<>();
+        int size = size();
+        for (int slot = 0; slot < size; slot++) {
+            apps[slot] = recode(oldNames, apps[slot]);
+            instances[slot] = recode(oldNames, instances[slot]);
+            statuses[slot] = recode(oldNames, statuses[slot]);
+        }
+        oldCodes.clear();
+    }
+
+    private int recode(List<String> oldNames, int code) {
+        return code == NO_CODE ? NO_CODE : encode(oldNames.get(code));
+    }
+}
@@ -0,0 +1,269 @@
+package com.polykhel.ssa.service;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.service.dto.RegistryEventDTO;
+import com.polykhel.ssa.service.dto.ZuulRouteDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams the registry and route changes to the subscribers as server-sent events.
+ * <p>
+ * Each subscriber has a bounded buffer, drained by dispatcher threads started on demand, at most one per
+ * subscriber, so that a subscriber stalled on a blocking write only holds its own thread and never delays
+ * the registry nor the other subscribers. A subscriber whose buffer is full, or whose write has been blocked
+ * for more than {@link #SEND_TIMEOUT_MILLIS}, is disconnected, and is expected to reload the full state
+ * before subscribing again; the thread of a stalled write is released by the write timeout of the servlet
+ * container. Every event is also kept in the {@link RegistryEventHistory}.
+ */
+@Service
+@Slf4j
+public class RegistryEventService {
+
+    private static final int MAX_DISPATCHER_THREADS = 64;
+
+    private static final long SEND_TIMEOUT_MILLIS = 10_000L;
+
+    private static final RegistryEventDTO HEARTBEAT =
+        new RegistryEventDTO(-1, null, 0, null, null, null, null, null);
+
+    private final int bufferSize;
+
+    private final long timeoutMillis;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, String> instanceStatuses = new ConcurrentHashMap<>();
+
+    private final ExecutorService dispatcher;
+
+    private final RegistryEventHistory history;
+
+    public RegistryEventService(CoreProperties coreProperties, RegistryEventHistory history) {
+        this.history = history;
+        this.bufferSize = coreProperties.getRegistry().getEvents().getBufferSize();
+        this.timeoutMillis = coreProperties.getRegistry().getEvents().getTimeoutInMillis();
+        this.dispatcher = new ThreadPoolExecutor(
+            0, MAX_DISPATCHER_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), job -> {
+                Thread thread = new Thread(job, "RegistryEventsDispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, bufferSize);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+        subscribers.add(subscriber);
+        log.debug("Registry events subscriber added, {} subscriber(s)", subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @EventListener
+    public void onInstanceRegistered(EurekaInstanceRegisteredEvent event) {
+        InstanceInfo instanceInfo = event.getInstanceInfo();
+        instanceStatuses.put(instanceInfo.getInstanceId(), instanceInfo.getStatus().name());
+        publish(RegistryEventDTO.Type.INSTANCE_REGISTERED, instanceInfo.getAppName(), instanceInfo.getInstanceId(),
+            instanceInfo.getStatus().name(), null, instanceInfo.getHomePageUrl());
+    }
+
+    @EventListener
+    public void onInstanceCanceled(EurekaInstanceCanceledEvent event) {
+        instanceStatuses.remove(event.getServerId());
+        publish(RegistryEventDTO.Type.INSTANCE_CANCELED, event.getAppName(), event.getServerId(), null, null, null);
+    }
+
+    /**
+     * Status changes are only visible in the lease renewals.
+     */
+    @EventListener
+    public void onInstanceRenewed(EurekaInstanceRenewedEvent event) {
+        InstanceInfo instanceInfo = event.getInstanceInfo();
+        if (instanceInfo == null) {
+            return;
+        }
+        String status = instanceInfo.getStatus().name();
+        String previous = instanceStatuses.put(instanceInfo.getInstanceId(), status);
+        if (!Objects.equals(previous, status)) {
+            publish(RegistryEventDTO.Type.INSTANCE_STATUS_CHANGED, event.getAppName(), instanceInfo.getInstanceId(),
+                status, null, instanceInfo.getHomePageUrl());
+        }
+    }
+
+    /**
+     * Publish a change of the Zuul routes.
+     */
+    public void publishRoute(RegistryEventDTO.Type type, String appName, ZuulProperties.ZuulRoute route) {
+        String status = route instanceof ZuulRouteDTO ? ((ZuulRouteDTO) route).getStatus() : null;
+        publish(type, appName, route.getId(), status, route.getPath(), route.getUrl());
+    }
+
+    /**
+     * Keep the idle connections open through the proxies, and detect the closed ones.
+     */
+    @Scheduled(fixedDelay = 15_000)
+    public void sendHeartbeats() {
+        subscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+    }
+
+    /**
+     * Disconnect the subscribers whose write has been blocked for too long, so that events are no
+     * longer buffered for them.
+     */
+    @Scheduled(fixedDelay = 1_000)
+    public void closeStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        subscribers.forEach(subscriber -> {
+            long sendingSince = subscriber.sendingSince;
+            if (sendingSince != 0 && now - sendingSince > SEND_TIMEOUT_MILLIS) {
+                log.info("Disconnecting a registry events subscriber stalled for {} ms", now - sendingSince);
+                close(subscriber);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        subscribers.forEach(this::close);
+        dispatcher.shutdown();
+    }
+
+    private void publish(RegistryEventDTO.Type type, String appName, String instanceId, String status, String path,
+                         String url) {
+        RegistryEventDTO event = new RegistryEventDTO(sequence.incrementAndGet(), type, System.currentTimeMillis(),
+            appName, instanceId, status, path, url);
+        history.record(event);
+        subscribers.forEach(subscriber -> offer(subscriber, event));
+    }
+
+    private void offer(Subscriber subscriber, RegistryEventDTO event) {
+        if (subscriber.queue.offer(event)) {
+            schedule(subscriber);
+        } else {
+            log.info("Disconnecting a registry events subscriber that is {} events behind", bufferSize);
+            close(subscriber);
+        }
+    }
+
+    /**
+     * The emitter is only used by the dispatcher thread draining the subscriber, so that a slow
+     * subscriber only blocks that thread.
+     */
+    private void close(Subscriber subscriber) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            subscribers.remove(subscriber);
+            subscriber.queue.clear();
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dispatcher.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // every dispatcher thread is busy: the next event or heartbeat schedules it again, but
+            // a closed subscriber no longer gets any, so it is completed here
+            try {
+                complete(subscriber);
+            } finally {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            RegistryEventDTO event;
+            while (!subscriber.closed.get() && (event = subscriber.queue.poll()) != null) {
+                send(subscriber, event);
+            }
+            complete(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // an event or a close may have come after the last check, while still draining
+        if (subscriber.closed.get() ? !subscriber.completed.get() : !subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Complete the emitter of a closed subscriber, once. Only called holding the draining flag.
+     */
+    private void complete(Subscriber subscriber) {
+        if (subscriber.closed.get() && subscriber.completed.compareAndSet(false, true)) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void send(Subscriber subscriber, RegistryEventDTO event) {
+        subscriber.sendingSince = System.currentTimeMillis();
+        try {
+            if (event == HEARTBEAT) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else {
+                subscriber.emitter.send(SseEmitter.event()
+                    .id(Long.toString(event.getId()))
+                    .name(event.getType().name())
+                    .data(event, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Registry events subscriber disconnected: {}", e.getMessage());
+            subscriber.closed.set(true);
+            subscribers.remove(subscriber);
+        } finally {
+            subscriber.sendingSince = 0;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<RegistryEventDTO> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
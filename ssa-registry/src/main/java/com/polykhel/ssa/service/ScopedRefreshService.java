@@ -0,0 +1,196 @@
+package com.polykhel.ssa.service;
+
+import com.polykhel.ssa.config.PropertiesChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBean;
+import org.springframework.boot.context.properties.source.ConfigurationPropertyName;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.properties.ConfigurationPropertiesBeans;
+import org.springframework.cloud.context.properties.ConfigurationPropertiesRebinder;
+import org.springframework.cloud.context.scope.refresh.RefreshScope;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Applies a set of changed properties without refreshing the whole context.
+ * <p>
+ * Unlike {@link org.springframework.cloud.context.refresh.ContextRefresher#refresh()}, which rebinds
+ * every {@code @ConfigurationProperties} bean and destroys every refresh-scoped bean, only the
+ * properties beans whose prefix contains a changed key are rebound, and only the refresh-scoped beans
+ * that depend on them are recreated. A {@link PropertiesChangedEvent} then lets the other components
+ * rebuild what depends on the changed keys.
+ * <p>
+ * The refreshed properties replace the property sources loaded at startup from the refreshed
+ * directory, so that a property removed from a file is no longer resolved from its original source.
+ */
+@Service
+@Slf4j
+public class ScopedRefreshService {
+
+    /**
+     * Name of the property source holding the refreshed properties.
+     */
+    public static final String PROPERTY_SOURCE_NAME = "scopedRefresh";
+
+    private static final String REFRESH_SCOPE = "refresh";
+
+    private final ConfigurableApplicationContext context;
+
+    private final ConfigurationPropertiesBeans propertiesBeans;
+
+    private final ConfigurationPropertiesRebinder rebinder;
+
+    private final RefreshScope refreshScope;
+
+    public ScopedRefreshService(ConfigurableApplicationContext context, ConfigurationPropertiesBeans propertiesBeans,
+                                ConfigurationPropertiesRebinder rebinder, RefreshScope refreshScope) {
+        this.context = context;
+        this.propertiesBeans = propertiesBeans;
+        this.rebinder = rebinder;
+        this.refreshScope = refreshScope;
+    }
+
+    /**
+     * Replace the refreshed properties, and rebind the beans that hold the changed ones.
+     *
+     * @param values      all the refreshed properties, which replace the configuration files of the
+     *                    directory.
+     * @param changedKeys the keys of the properties that were added, removed or changed.
+     * @param directory   the directory of the refreshed configuration files.
+     * @return the names of the rebound {@code @ConfigurationProperties} beans.
+     */
+    public synchronized Set<String> refresh(Map<String, ?> values, Set<String> changedKeys, Path directory) {
+        updateEnvironment(values, directory);
+
+        Set<String> unboundKeys = new TreeSet<>(changedKeys);
+        Set<String> reboundBeans = new TreeSet<>();
+        for (String beanName : propertiesBeans.getBeanNames()) {
+            ConfigurationPropertiesBean bean =
+                ConfigurationPropertiesBean.get(context, context.getBean(beanName), beanName);
+            if (bean == null) {
+                continue;
+            }
+            Set<String> beanKeys = keysUnder(bean.getAnnotation().prefix(), changedKeys);
+            if (!beanKeys.isEmpty() && rebinder.rebind(beanName)) {
+                unboundKeys.removeAll(beanKeys);
+                reboundBeans.add(beanName);
+            }
+        }
+        log.debug("Rebound {} for the changed properties {}", reboundBeans, changedKeys);
+
+        Set<String> refreshedBeans = new TreeSet<>();
+        ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+        for (String beanName : reboundBeans) {
+            for (String dependent : beanFactory.getDependentBeans(beanName)) {
+                if (isRefreshScoped(beanFactory, dependent) && refreshedBeans.add(dependent)) {
+                    refreshScope.refresh(dependent);
+                }
+            }
+        }
+        // the other keys may be injected with @Value in any refresh-scoped bean
+        unboundKeys.removeIf(key -> key.startsWith("logging."));
+        if (!unboundKeys.isEmpty()) {
+            log.debug("Refreshing all the refresh-scoped beans for {}", unboundKeys);
+            refreshScope.refreshAll();
+        } else if (!refreshedBeans.isEmpty()) {
+            log.debug("Refreshed {}", refreshedBeans);
+        }
+
+        // not published by the context, so that the ConfigurationPropertiesRebinder does not rebind
+        // every bean, while the LoggingRebinder still applies the log levels
+        context.publishEvent(new EnvironmentChangeEvent(this, changedKeys));
+        context.publishEvent(new PropertiesChangedEvent(this, changedKeys, reboundBeans));
+        return reboundBeans;
+    }
+
+    /**
+     * The refreshed properties take the place of the highest ranked file of the directory, and the
+     * other files of the directory are removed. When none of them was loaded at startup, they rank
+     * below the system environment like configuration files.
+     */
+    private void updateEnvironment(Map<String, ?> values, Path directory) {
+        MapPropertySource propertySource = new MapPropertySource(PROPERTY_SOURCE_NAME, new LinkedHashMap<>(values));
+        MutablePropertySources propertySources = context.getEnvironment().getPropertySources();
+        List<String> replaced = propertySources.stream()
+            .filter(source -> isLoadedFrom(source, directory))
+            .map(PropertySource::getName)
+            .collect(Collectors.toList());
+        if (propertySources.contains(PROPERTY_SOURCE_NAME)) {
+            propertySources.replace(PROPERTY_SOURCE_NAME, propertySource);
+        } else if (!replaced.isEmpty()) {
+            propertySources.addBefore(replaced.get(0), propertySource);
+        } else if (propertySources.contains(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME)) {
+            propertySources.addAfter(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME, propertySource);
+        } else {
+            propertySources.addFirst(propertySource);
+        }
+        replaced.forEach(propertySources::remove);
+        if (!replaced.isEmpty()) {
+            log.debug("Replaced the property sources {} with the refreshed properties", replaced);
+        }
+    }
+
+    /**
+     * Whether the source was loaded by Spring Boot from a file of the directory, such as
+     * {@code applicationConfig: [file:/config/application.yml]}.
+     */
+    private static boolean isLoadedFrom(PropertySource<?> source, Path directory) {
+        String name = source.getName();
+        int start = name.indexOf('[');
+        int end = name.indexOf(']', start + 1);
+        if (!name.startsWith(ConfigFileApplicationListener.APPLICATION_CONFIG_PROPERTY_SOURCE_NAME) ||
+            start < 0 || end < 0) {
+            return false;
+        }
+        String location = name.substring(start + 1, end);
+        if (location.startsWith("file:")) {
+            location = location.substring("file:".length());
+        } else if (location.contains(":")) {
+            return false;
+        }
+        try {
+            return Paths.get(location).toAbsolutePath().normalize()
+                .startsWith(directory.toAbsolutePath().normalize());
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static Set<String> keysUnder(String prefix, Set<String> keys) {
+        Set<String> matching = new HashSet<>();
+        ConfigurationPropertyName prefixName = ConfigurationPropertyName.of(prefix);
+        for (String key : keys) {
+            ConfigurationPropertyName name = ConfigurationPropertyName.adapt(key, '.');
+            if (prefixName.isEmpty() || prefixName.equals(name) || prefixName.isAncestorOf(name)) {
+                matching.add(key);
+            }
+        }
+        return matching;
+    }
+
+    private static boolean isRefreshScoped(ConfigurableListableBeanFactory beanFactory, String beanName) {
+        if (!beanFactory.containsBeanDefinition(beanName)) {
+            return false;
+        }
+        BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+        return REFRESH_SCOPE.equals(definition.getScope());
+    }
+}
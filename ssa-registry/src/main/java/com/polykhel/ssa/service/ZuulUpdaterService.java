@@ -3,85 +3,216 @@ package com.polykhel.ssa.service;
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.discovery.shared.Application;
 import com.netflix.eureka.EurekaServerContextHolder;
+import com.polykhel.ssa.config.PropertiesChangedEvent;
+import com.polykhel.ssa.service.dto.RegistryEventDTO;
 import com.polykhel.ssa.service.dto.ZuulRouteDTO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
 import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
 import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Updates Zuul proxies depending on available application instances.
+ * <p>
+ * Routes are updated as soon as Eureka registers, renews or cancels an instance lease. All changes
+ * are applied on a single thread, and bursts of changes (e.g. during a deployment) are merged into
+ * one {@link RoutesRefreshedEvent}. A periodic scan of the whole registry only remains as a
+ * consistency check. Each added, updated or removed route is also streamed by the
+ * {@link RegistryEventService}.
  */
 @Service
 @Slf4j
 public class ZuulUpdaterService {
 
+    private static final long REFRESH_DEBOUNCE_MILLIS = 500L;
+
     private final RouteLocator routeLocator;
 
     private final ZuulProperties zuulProperties;
 
     private final ApplicationEventPublisher publisher;
 
-    public ZuulUpdaterService(RouteLocator routeLocator, ZuulProperties zuulProperties, ApplicationEventPublisher publisher) {
+    private final RegistryEventService registryEventService;
+
+    private final ScheduledExecutorService updater;
+
+    private ScheduledFuture<?> pendingRefresh;
+
+    public ZuulUpdaterService(RouteLocator routeLocator, ZuulProperties zuulProperties, ApplicationEventPublisher publisher,
+                              RegistryEventService registryEventService) {
         this.routeLocator = routeLocator;
         this.zuulProperties = zuulProperties;
         this.publisher = publisher;
+        this.registryEventService = registryEventService;
+        this.updater = Executors.newSingleThreadScheduledExecutor(job -> {
+            Thread thread = new Thread(job, "ZuulRoutesUpdater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener
+    public void onInstanceRegistered(EurekaInstanceRegisteredEvent event) {
+        InstanceInfo instanceInfo = event.getInstanceInfo();
+        updater.execute(() -> {
+            if (updateRoute(instanceInfo.getAppName(), instanceInfo)) {
+                scheduleRefresh();
+            }
+        });
+    }
+
+    /**
+     * Lease renewals carry the current instance status, which catches status changes that were not
+     * followed by a new registration.
+     */
+    @EventListener
+    public void onInstanceRenewed(EurekaInstanceRenewedEvent event) {
+        InstanceInfo instanceInfo = event.getInstanceInfo();
+        if (instanceInfo == null) {
+            return;
+        }
+        updater.execute(() -> {
+            if (updateRoute(event.getAppName(), instanceInfo)) {
+                scheduleRefresh();
+            }
+        });
+    }
+
+    @EventListener
+    public void onInstanceCanceled(EurekaInstanceCanceledEvent event) {
+        String instanceId = event.getServerId();
+        updater.execute(() -> {
+            ZuulProperties.ZuulRoute removed = zuulProperties.getRoutes().remove(instanceId);
+            if (removed != null) {
+                log.debug("Removing instance '{}'", instanceId);
+                registryEventService.publishRoute(RegistryEventDTO.Type.ROUTE_REMOVED, event.getAppName(), removed);
+                scheduleRefresh();
+            }
+        });
     }
 
-    @Scheduled(fixedDelay = 5_000)
+    /**
+     * Rebinding the Zuul properties replaces the routes of the registered instances, which are added
+     * back at once.
+     */
+    @EventListener
+    public void onPropertiesChanged(PropertiesChangedEvent event) {
+        if (event.isChanged("zuul")) {
+            updater.execute(() -> {
+                reconcileRoutes();
+                scheduleRefresh();
+            });
+        }
+    }
+
+    /**
+     * Consistency check between the Eureka registry and the Zuul routes, in case a lease event was
+     * missed.
+     */
+    @Scheduled(fixedDelay = 30_000)
     public void updateZuulRoutes() {
+        updater.execute(this::reconcileRoutes);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        updater.shutdownNow();
+    }
+
+    private void reconcileRoutes() {
         boolean isDirty = false;
 
         List<Application> applications = EurekaServerContextHolder
             .getInstance().getServerContext().getRegistry().getApplications().getRegisteredApplications();
 
+        Set<String> instanceIds = new HashSet<>();
         for (Application application : applications) {
             for (InstanceInfo instanceInfo : application.getInstances()) {
-                if (!instanceInfo.getStatus().equals(InstanceInfo.InstanceStatus.UP) &&
-                    !instanceInfo.getStatus().equals(InstanceInfo.InstanceStatus.STARTING)) continue;
-                String instanceId = instanceInfo.getInstanceId();
-                String url = instanceInfo.getHomePageUrl();
-                log.debug("Checking instance {} - {} ", instanceId, url);
-
-                ZuulRouteDTO route = new ZuulRouteDTO(instanceId, "/" +
-                    application.getName().toLowerCase() + "/" + instanceId + "/**",
-                    null, url, zuulProperties.isStripPrefix(), zuulProperties.getRetryable(), Collections.emptySet(),
-                    instanceInfo.getStatus().toString());
-
-                if (zuulProperties.getRoutes().containsKey(instanceId)) {
-                    log.debug("Instance '{}' already registered", instanceId);
-                    if (!zuulProperties.getRoutes().get(instanceId).getUrl().equals(url) ||
-                        !((ZuulRouteDTO) zuulProperties.getRoutes().get(instanceId)).getStatus().equals(instanceInfo.getStatus().toString())) {
-                        log.debug("Updating instance '{}' with new URL: {}", instanceId, url);
-                        zuulProperties.getRoutes().put(instanceId, route);
-                        isDirty = true;
-                    }
-                }
+                instanceIds.add(instanceInfo.getId());
+                isDirty |= updateRoute(application.getName(), instanceInfo);
             }
         }
         List<String> zuulRoutesToRemove = new ArrayList<>();
         for (String key : zuulProperties.getRoutes().keySet()) {
-            if (applications.stream()
-                .flatMap(application -> application.getInstances().stream())
-                .noneMatch(instanceInfo -> instanceInfo.getId().equals(key))) {
+            if (!instanceIds.contains(key)) {
                 log.debug("Removing instance '{}'", key);
                 zuulRoutesToRemove.add(key);
-                isDirty = true;
             }
         }
         for (String key : zuulRoutesToRemove) {
-            zuulProperties.getRoutes().remove(key);
+            ZuulProperties.ZuulRoute removed = zuulProperties.getRoutes().remove(key);
+            registryEventService.publishRoute(RegistryEventDTO.Type.ROUTE_REMOVED, null, removed);
+            isDirty = true;
         }
         if (isDirty) {
+            scheduleRefresh();
+        }
+    }
+
+    /**
+     * Add or update the route of an instance that is up or starting.
+     *
+     * @return {@code true} if the routes have changed.
+     */
+    private boolean updateRoute(String appName, InstanceInfo instanceInfo) {
+        if (!instanceInfo.getStatus().equals(InstanceInfo.InstanceStatus.UP) &&
+            !instanceInfo.getStatus().equals(InstanceInfo.InstanceStatus.STARTING)) return false;
+        String instanceId = instanceInfo.getInstanceId();
+        String url = instanceInfo.getHomePageUrl();
+        String status = instanceInfo.getStatus().toString();
+        log.debug("Checking instance {} - {} ", instanceId, url);
+
+        ZuulProperties.ZuulRoute existing = zuulProperties.getRoutes().get(instanceId);
+        if (existing != null) {
+            log.debug("Instance '{}' already registered", instanceId);
+            if (Objects.equals(existing.getUrl(), url) && existing instanceof ZuulRouteDTO &&
+                ((ZuulRouteDTO) existing).getStatus().equals(status)) {
+                return false;
+            }
+            log.debug("Updating instance '{}' with new URL: {}", instanceId, url);
+        } else {
+            log.debug("Adding instance '{}' with URL: {}", instanceId, url);
+        }
+        ZuulRouteDTO route = new ZuulRouteDTO(instanceId, "/" +
+            appName.toLowerCase() + "/" + instanceId + "/**",
+            null, url, zuulProperties.isStripPrefix(), zuulProperties.getRetryable(), Collections.emptySet(),
+            status);
+        zuulProperties.getRoutes().put(instanceId, route);
+        registryEventService.publishRoute(
+            existing != null ? RegistryEventDTO.Type.ROUTE_UPDATED : RegistryEventDTO.Type.ROUTE_ADDED, appName, route);
+        return true;
+    }
+
+    /**
+     * Publish a single {@link RoutesRefreshedEvent} for all the changes made within the debounce
+     * delay. Only called from the updater thread.
+     */
+    private void scheduleRefresh() {
+        if (pendingRefresh != null && !pendingRefresh.isDone()) {
+            return;
+        }
+        pendingRefresh = updater.schedule(() -> {
             log.info("Zuul routes have changed - refreshing the configuration");
             this.publisher.publishEvent(new RoutesRefreshedEvent(routeLocator));
-        }
+        }, REFRESH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
     }
 }
@@ -0,0 +1,28 @@
+package com.polykhel.ssa.service.dto;
+
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Number of registry and route changes of each type within a time bucket.
+ */
+@Getter
+public class HistoryBucketDTO {
+
+    private final long start;
+
+    private final Map<RegistryEventDTO.Type, Long> counts = new EnumMap<>(RegistryEventDTO.Type.class);
+
+    /**
+     * @param countsByType counts indexed by {@link RegistryEventDTO.Type} ordinal.
+     */
+    public HistoryBucketDTO(long start, long[] countsByType) {
+        this.start = start;
+        RegistryEventDTO.Type[] types = RegistryEventDTO.Type.values();
+        for (int i = 0; i < types.length; i++) {
+            counts.put(types[i], countsByType[i]);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.polykhel.ssa.service.dto;
+
+import lombok.Getter;
+
+/**
+ * A change of the registry or of the Zuul routes, as streamed to the subscribers.
+ */
+@Getter
+public class RegistryEventDTO {
+
+    public enum Type {
+        INSTANCE_REGISTERED, INSTANCE_CANCELED, INSTANCE_STATUS_CHANGED, ROUTE_ADDED, ROUTE_UPDATED, ROUTE_REMOVED
+    }
+
+    private final long id;
+
+    private final Type type;
+
+    private final long timestamp;
+
+    private final String appName;
+
+    private final String instanceId;
+
+    private final String status;
+
+    private final String path;
+
+    private final String url;
+
+    public RegistryEventDTO(long id, Type type, long timestamp, String appName, String instanceId, String status,
+                            String path, String url) {
+        this.id = id;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.appName = appName;
+        this.instanceId = instanceId;
+        this.status = status;
+        this.path = path;
+        this.url = url;
+    }
+}
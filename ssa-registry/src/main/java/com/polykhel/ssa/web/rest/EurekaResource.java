@@ -1,5 +1,6 @@
 package com.polykhel.ssa.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.appinfo.InstanceInfo;
 import com.netflix.config.ConfigurationManager;
 import com.netflix.discovery.shared.Application;
@@ -13,14 +14,20 @@ import com.netflix.eureka.util.StatusInfo;
 import com.polykhel.ssa.web.rest.vm.EurekaVM;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRenewedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -37,29 +44,65 @@ import static java.util.stream.Collectors.toMap;
 @Slf4j
 public class EurekaResource {
 
+    private static final long APPLICATIONS_MAX_AGE_MILLIS = 30_000L;
+
+    private final SnapshotCache<EurekaVM> applications;
+
+    /**
+     * Status of each instance in the applications snapshot, to only invalidate it on the lease
+     * renewals that change a status.
+     */
+    private volatile Map<String, String> instanceStatuses = Collections.emptyMap();
+
+    public EurekaResource(ObjectMapper objectMapper) {
+        this.applications = new SnapshotCache<>(() -> {
+            EurekaVM eurekaVM = new EurekaVM();
+            eurekaVM.setApplications(getApplications());
+            return eurekaVM;
+        }, objectMapper, APPLICATIONS_MAX_AGE_MILLIS);
+    }
+
     /**
      * GET  /eureka/applications : get Eureka applications information
+     * <p>
+     * Served from a snapshot, with a {@code 304 Not Modified} response when the {@code If-None-Match}
+     * header matches its {@code ETag}.
      */
     @GetMapping("/applications")
-    public ResponseEntity<EurekaVM> eureka() {
-        EurekaVM eurekaVM = new EurekaVM();
-        eurekaVM.setApplications(getApplications());
-        return ResponseEntity.ok(eurekaVM);
+    public ResponseEntity<byte[]> eureka(WebRequest request) {
+        return applications.respond(request);
+    }
+
+    @EventListener({EurekaInstanceRegisteredEvent.class, EurekaInstanceCanceledEvent.class})
+    public void onRegistryChanged() {
+        applications.invalidate();
+    }
+
+    @EventListener
+    public void onInstanceRenewed(EurekaInstanceRenewedEvent event) {
+        InstanceInfo instanceInfo = event.getInstanceInfo();
+        if (instanceInfo != null &&
+            !instanceInfo.getStatus().name().equals(instanceStatuses.get(instanceInfo.getInstanceId()))) {
+            applications.invalidate();
+        }
     }
 
 
     /**
      * GET  /eureka/lastn : get Eureka registrations
+     * <p>
+     * Only the last 1000 of each, see {@code /api/registry/events/history} for a longer history.
      */
     @GetMapping("/eureka/lastn")
     public ResponseEntity<Map<String, Map<Long, String>>> lastn() {
         Map<String, Map<Long, String>> lastn = new HashMap<>();
         PeerAwareInstanceRegistryImpl registry = (PeerAwareInstanceRegistryImpl) getRegistry();
+        // keep the order of the registry, and several events of the same millisecond
         Map<Long, String> canceledMap = registry.getLastNCanceledInstances()
-            .stream().collect(toMap(Pair::first, Pair::second));
+            .stream().collect(toMap(Pair::first, Pair::second, (a, b) -> a + ", " + b, LinkedHashMap::new));
         lastn.put("canceled", canceledMap);
         Map<Long, String> registeredMap = registry.getLastNRegisteredInstances()
-            .stream().collect(toMap(Pair::first, Pair::second));
+            .stream().collect(toMap(Pair::first, Pair::second, (a, b) -> a + ", " + b, LinkedHashMap::new));
         lastn.put("registered", registeredMap);
         return ResponseEntity.ok(lastn);
     }
@@ -98,6 +141,7 @@ public class EurekaResource {
     private List<Map<String, Object>> getApplications() {
         List<Application> sortedApplications = getRegistry().getSortedApplications();
         List<Map<String, Object>> apps = new ArrayList<>();
+        Map<String, String> statuses = new HashMap<>();
         for (Application app : sortedApplications) {
             HashMap<String, Object> appData = new LinkedHashMap<>();
             apps.add(appData);
@@ -112,9 +156,11 @@ public class EurekaResource {
                 instance.put("status", info.getStatus().name());
                 instance.put("metadata", info.getMetadata());
                 instances.add(instance);
+                statuses.put(info.getInstanceId(), info.getStatus().name());
             }
             appData.put("instances", instances);
         }
+        instanceStatuses = statuses;
         return apps;
     }
 
@@ -0,0 +1,84 @@
+package com.polykhel.ssa.web.rest;
+
+import com.polykhel.ssa.service.RegistryEventHistory;
+import com.polykhel.ssa.service.RegistryEventService;
+import com.polykhel.ssa.service.dto.HistoryBucketDTO;
+import com.polykhel.ssa.service.dto.RegistryEventDTO;
+import com.polykhel.ssa.web.rest.errors.BadRequestAlertException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+/**
+ * Controller for streaming the registry and route changes.
+ */
+@RestController
+@RequestMapping("/api/registry")
+public class RegistryEventsResource {
+
+    private static final int MAX_HISTORY_EVENTS = 10_000;
+
+    private final RegistryEventService registryEventService;
+
+    private final RegistryEventHistory registryEventHistory;
+
+    public RegistryEventsResource(RegistryEventService registryEventService,
+                                  RegistryEventHistory registryEventHistory) {
+        this.registryEventService = registryEventService;
+        this.registryEventHistory = registryEventHistory;
+    }
+
+    /**
+     * GET  /registry/events : stream the instance registrations, cancellations and status changes, and
+     * the route changes, as server-sent events. The current state is available from
+     * {@code /api/eureka/applications} and {@code /api/routes}.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events() {
+        return registryEventService.subscribe();
+    }
+
+    /**
+     * GET  /registry/events/history : get the recorded events of a time range, oldest first.
+     *
+     * @param from  start of the range in epoch milliseconds, inclusive.
+     * @param to    end of the range in epoch milliseconds, exclusive.
+     * @param app   only the events of this application.
+     * @param limit maximum number of events.
+     */
+    @GetMapping("/events/history")
+    public ResponseEntity<List<RegistryEventDTO>> history(@RequestParam(defaultValue = "0") long from,
+                                                          @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+                                                          @RequestParam(required = false) String app,
+                                                          @RequestParam(defaultValue = "1000") int limit) {
+        int max = Math.max(0, Math.min(limit, MAX_HISTORY_EVENTS));
+        return ResponseEntity.ok(registryEventHistory.find(from, to, app, max));
+    }
+
+    /**
+     * GET  /registry/events/history/buckets : count the recorded events of a time range per type and
+     * time bucket.
+     *
+     * @param from   start of the range in epoch milliseconds, inclusive.
+     * @param to     end of the range in epoch milliseconds, exclusive.
+     * @param bucket duration of the buckets in milliseconds.
+     * @param app    only the events of this application.
+     */
+    @GetMapping("/events/history/buckets")
+    public ResponseEntity<List<HistoryBucketDTO>> historyBuckets(@RequestParam long from,
+                                                                 @RequestParam long to,
+                                                                 @RequestParam(defaultValue = "60000") long bucket,
+                                                                 @RequestParam(required = false) String app) {
+        try {
+            return ResponseEntity.ok(registryEventHistory.countByBucket(from, to, bucket, app));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), "registryEvents", "invalidrange");
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.polykhel.ssa.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.appinfo.InstanceInfo;
 import com.polykhel.ssa.service.dto.ZuulRouteDTO;
 import com.polykhel.ssa.web.rest.vm.RouteVM;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceCanceledEvent;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaInstanceRegisteredEvent;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.Route;
 import org.springframework.cloud.netflix.zuul.filters.RouteLocator;
 import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,6 +28,8 @@ import java.util.Map;
 @RequestMapping("/api/routes")
 public class RoutesResource {
 
+    private static final long ROUTES_MAX_AGE_MILLIS = 30_000L;
+
     @Value("${spring.application.name}")
     private String registryName;
 
@@ -31,14 +39,35 @@ public class RoutesResource {
 
     private final ZuulProperties zuulProperties;
 
-    public RoutesResource(RouteLocator routeLocator, DiscoveryClient discoveryClient, ZuulProperties zuulProperties) {
+    private final SnapshotCache<List<RouteVM>> routesSnapshot;
+
+    public RoutesResource(RouteLocator routeLocator, DiscoveryClient discoveryClient, ZuulProperties zuulProperties,
+                          ObjectMapper objectMapper) {
         this.routeLocator = routeLocator;
         this.discoveryClient = discoveryClient;
         this.zuulProperties = zuulProperties;
+        this.routesSnapshot = new SnapshotCache<>(this::loadRoutes, objectMapper, ROUTES_MAX_AGE_MILLIS);
     }
 
+    /**
+     * Served from a snapshot, with a {@code 304 Not Modified} response when the {@code If-None-Match}
+     * header matches its {@code ETag}.
+     */
     @GetMapping
-    public ResponseEntity<List<RouteVM>> getRoutes() {
+    public ResponseEntity<byte[]> getRoutes(WebRequest request) {
+        return routesSnapshot.respond(request);
+    }
+
+    @EventListener({
+        RoutesRefreshedEvent.class,
+        EurekaInstanceRegisteredEvent.class,
+        EurekaInstanceCanceledEvent.class
+    })
+    public void onRoutesChanged() {
+        routesSnapshot.invalidate();
+    }
+
+    private List<RouteVM> loadRoutes() {
         List<Route> routes = routeLocator.getRoutes();
         Map<String, RouteVM> routeVMs = new HashMap<>();
         routeVMs.put(null, registryRoute());
@@ -59,7 +88,7 @@ public class RoutesResource {
 
         fillStatus(routeVMs);
 
-        return ResponseEntity.ok(new ArrayList<>(routeVMs.values()));
+        return new ArrayList<>(routeVMs.values());
     }
 
     /**
@@ -0,0 +1,103 @@
+package com.polykhel.ssa.web.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of a response body, rebuilt only after it has been invalidated or has expired, and served
+ * with a strong {@code ETag} computed once from its JSON representation.
+ * <p>
+ * The body is serialized once per snapshot, and the same bytes are served to every request.
+ * <p>
+ * Requests with a matching {@code If-None-Match} header get a {@code 304 Not Modified} response, so
+ * polling clients only cost a version check and a string comparison until the data changes. The
+ * expiry only catches the changes that are not notified, such as evicted leases.
+ */
+final class SnapshotCache<T> {
+
+    private final Supplier<T> loader;
+
+    private final ObjectMapper objectMapper;
+
+    private final long maxAgeMillis;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    SnapshotCache(Supplier<T> loader, ObjectMapper objectMapper, long maxAgeMillis) {
+        this.loader = loader;
+        this.objectMapper = objectMapper;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Rebuild the snapshot on the next request. Safe to call from any thread.
+     */
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    ResponseEntity<byte[]> respond(WebRequest request) {
+        Snapshot current = get();
+        if (request.checkNotModified(current.etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current.etag).build();
+        }
+        return ResponseEntity.ok().eTag(current.etag).contentType(MediaType.APPLICATION_JSON).body(current.body);
+    }
+
+    private Snapshot get() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (isFresh(current)) {
+                return current;
+            }
+            // read before loading, so that an invalidation during the load triggers another one
+            long loadedVersion = version.get();
+            byte[] body = serialize(loader.get());
+            current = new Snapshot(loadedVersion, System.currentTimeMillis(), body,
+                "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+            snapshot = current;
+            return current;
+        }
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.version == version.get() &&
+            System.currentTimeMillis() - current.createdAt < maxAgeMillis;
+    }
+
+    private byte[] serialize(T body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the response snapshot", e);
+        }
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final long createdAt;
+        private final byte[] body;
+        private final String etag;
+
+        private Snapshot(long version, long createdAt, byte[] body, String etag) {
+            this.version = version;
+            this.createdAt = createdAt;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.polykhel.ssa.config.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryRateLimiterBackendTests {
+
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private final InMemoryRateLimiterBackend backend = new InMemoryRateLimiterBackend();
+
+    @Test
+    void consumesUpToTheLimit() {
+        RateLimiterBackend.Probe first = backend.tryConsume("client", 3, HOUR);
+        RateLimiterBackend.Probe second = backend.tryConsume("client", 3, HOUR);
+        RateLimiterBackend.Probe third = backend.tryConsume("client", 3, HOUR);
+        RateLimiterBackend.Probe rejected = backend.tryConsume("client", 3, HOUR);
+
+        assertThat(first.isConsumed()).isTrue();
+        assertThat(first.getRemainingTokens()).isEqualTo(2);
+        assertThat(first.getNanosToWaitForRefill()).isZero();
+        assertThat(second.isConsumed()).isTrue();
+        assertThat(second.getRemainingTokens()).isEqualTo(1);
+        assertThat(third.isConsumed()).isTrue();
+        assertThat(third.getRemainingTokens()).isZero();
+        assertThat(rejected.isConsumed()).isFalse();
+        assertThat(rejected.getRemainingTokens()).isZero();
+    }
+
+    @Test
+    void rejectedProbeTellsWhenTheNextTokenIsAvailable() {
+        for (int i = 0; i < 3; i++) {
+            backend.tryConsume("client", 3, HOUR);
+        }
+
+        RateLimiterBackend.Probe rejected = backend.tryConsume("client", 3, HOUR);
+
+        // one token every 20 minutes, the bucket being full again an hour after the first call
+        long interval = HOUR.toNanos() / 3;
+        assertThat(rejected.getNanosToWaitForRefill())
+            .isLessThanOrEqualTo(interval)
+            .isGreaterThan(interval - Duration.ofMinutes(1).toNanos());
+        assertThat(rejected.getNanosToReset())
+            .isLessThanOrEqualTo(HOUR.toNanos())
+            .isGreaterThan(HOUR.toNanos() - Duration.ofMinutes(1).toNanos());
+    }
+
+    @Test
+    void keepsTheBucketsOfTheClientsApart() {
+        backend.tryConsume("client", 1, HOUR);
+
+        assertThat(backend.tryConsume("client", 1, HOUR).isConsumed()).isFalse();
+        assertThat(backend.tryConsume("other", 1, HOUR).isConsumed()).isTrue();
+        assertThat(backend.size()).isEqualTo(2);
+    }
+
+    @Test
+    void refillsContinuously() throws InterruptedException {
+        Duration period = Duration.ofMillis(200);
+        backend.tryConsume("client", 2, period);
+        backend.tryConsume("client", 2, period);
+        assertThat(backend.tryConsume("client", 2, period).isConsumed()).isFalse();
+
+        // one token is refilled every 100ms
+        Thread.sleep(150);
+
+        assertThat(backend.tryConsume("client", 2, period).isConsumed()).isTrue();
+    }
+
+    @Test
+    void rejectsNonPositiveLimit() {
+        assertThatThrownBy(() -> backend.tryConsume("client", 0, HOUR))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shorterQuotaCapsTheWaitOfTheExistingBuckets() {
+        for (int i = 0; i < 3; i++) {
+            backend.tryConsume("client", 3, HOUR);
+        }
+        Duration minute = Duration.ofMinutes(1);
+
+        backend.quotaChanged(3, minute);
+        RateLimiterBackend.Probe probe = backend.tryConsume("client", 3, minute);
+
+        assertThat(probe.isConsumed()).isFalse();
+        assertThat(probe.getNanosToReset()).isLessThanOrEqualTo(minute.toNanos());
+        assertThat(probe.getNanosToWaitForRefill()).isLessThanOrEqualTo(minute.toNanos() / 3);
+    }
+
+    @Test
+    void longerQuotaKeepsTheCallsAlreadyMade() {
+        backend.tryConsume("client", 3, HOUR);
+        Duration twoHours = Duration.ofHours(2);
+
+        backend.quotaChanged(6, twoHours);
+        RateLimiterBackend.Probe probe = backend.tryConsume("client", 6, twoHours);
+
+        assertThat(probe.isConsumed()).isTrue();
+        assertThat(probe.getRemainingTokens()).isEqualTo(4);
+    }
+
+    @Test
+    void evictsTheFullBucketsOnly() throws InterruptedException {
+        backend.tryConsume("idle", 1, Duration.ofMillis(1));
+        backend.tryConsume("active", 1, HOUR);
+        Thread.sleep(10);
+
+        backend.evictIdleBuckets();
+
+        assertThat(backend.size()).isEqualTo(1);
+        assertThat(backend.tryConsume("active", 1, HOUR).isConsumed()).isFalse();
+    }
+}
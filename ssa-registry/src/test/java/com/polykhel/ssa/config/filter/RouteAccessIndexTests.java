@@ -0,0 +1,107 @@
+package com.polykhel.ssa.config.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.netflix.zuul.filters.Route;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteAccessIndexTests {
+
+    private static Route route(String id, String path) {
+        return new Route(id, path, "http://" + id, "", false, Collections.emptySet());
+    }
+
+    @Test
+    void matchesTheRoutePrefix() {
+        RouteAccessIndex index = RouteAccessIndex.build(1, Arrays.asList(
+            route("service", "/service/**"),
+            route("service-admin", "/service-admin/**")), Collections.emptyMap());
+
+        RouteAccessIndex.RouteRule rule = index.match("/service/api/foo", 0);
+        assertThat(rule).isNotNull();
+        assertThat(rule.getServiceName()).isEqualTo("service");
+        assertThat(rule.getBasePath()).isEqualTo("/service");
+        assertThat(rule.hasAccessControlPolicy()).isFalse();
+        assertThat(index.match("/service-admin/api", 0).getServiceName()).isEqualTo("service-admin");
+        assertThat(index.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void wildcardOnlyMatchesBelowTheSlash() {
+        RouteAccessIndex index = RouteAccessIndex.build(
+            1, Collections.singletonList(route("service", "/service/**")), Collections.emptyMap());
+
+        assertThat(index.match("/service/", 0)).isNotNull();
+        assertThat(index.match("/service", 0)).isNull();
+        assertThat(index.match("/servicex/api", 0)).isNull();
+        assertThat(index.match("/other/api", 0)).isNull();
+        assertThat(index.match("", 0)).isNull();
+    }
+
+    @Test
+    void firstRouteWinsOverLongerPrefixes() {
+        RouteAccessIndex index = RouteAccessIndex.build(1, Arrays.asList(
+            route("parent", "/a/**"),
+            route("child", "/a/b/**")), Collections.emptyMap());
+
+        assertThat(index.match("/a/b/c", 0).getServiceName()).isEqualTo("parent");
+
+        RouteAccessIndex reversed = RouteAccessIndex.build(1, Arrays.asList(
+            route("child", "/a/b/**"),
+            route("parent", "/a/**")), Collections.emptyMap());
+
+        assertThat(reversed.match("/a/b/c", 0).getServiceName()).isEqualTo("child");
+        assertThat(reversed.match("/a/c", 0).getServiceName()).isEqualTo("parent");
+    }
+
+    @Test
+    void duplicatePathKeepsTheFirstRoute() {
+        RouteAccessIndex index = RouteAccessIndex.build(1, Arrays.asList(
+            route("first", "/service/**"),
+            route("second", "/service/**")), Collections.emptyMap());
+
+        assertThat(index.match("/service/api", 0).getServiceName()).isEqualTo("first");
+    }
+
+    @Test
+    void skipsTheCatchAllRoute() {
+        RouteAccessIndex index = RouteAccessIndex.build(
+            1, Collections.singletonList(route("registry", "/**")), Collections.emptyMap());
+
+        assertThat(index.match("/api/foo", 0)).isNull();
+    }
+
+    @Test
+    void matchesAfterTheContextPath() {
+        RouteAccessIndex index = RouteAccessIndex.build(
+            1, Collections.singletonList(route("service", "/service/**")), Collections.emptyMap());
+        String requestUri = "/context/service/api";
+
+        assertThat(index.match(requestUri, "/context".length()).getServiceName()).isEqualTo("service");
+        assertThat(index.match(requestUri, 0)).isNull();
+    }
+
+    @Test
+    void matchesTheAuthorizedEndpoints() {
+        Map<String, List<String>> endpoints =
+            Collections.singletonMap("service", Arrays.asList("/api/public", "/api/pub", "/management/info"));
+        RouteAccessIndex index = RouteAccessIndex.build(
+            1, Collections.singletonList(route("service", "/service/**")), endpoints);
+        String context = "/context";
+
+        RouteAccessIndex.RouteRule rule = index.match(context + "/service/api/public/items", context.length());
+        assertThat(rule.hasAccessControlPolicy()).isTrue();
+        // the shortest authorized prefix is found first
+        assertThat(rule.matchEndpoint(context + "/service/api/public/items", context.length()))
+            .isEqualTo("/api/pub");
+        assertThat(rule.matchEndpoint(context + "/service/management/info", context.length()))
+            .isEqualTo("/management/info");
+        assertThat(rule.matchEndpoint(context + "/service/api/private", context.length())).isNull();
+        assertThat(rule.matchEndpoint(context + "/service/management", context.length())).isNull();
+    }
+}
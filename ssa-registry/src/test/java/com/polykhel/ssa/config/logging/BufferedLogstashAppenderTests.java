@@ -0,0 +1,204 @@
+package com.polykhel.ssa.config.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ships to a loopback {@link ServerSocket} standing in for the Logstash TCP input.
+ */
+class BufferedLogstashAppenderTests {
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private static final int QUEUE_SIZE = 8;
+
+    @TempDir
+    Path tempDir;
+
+    private final LoggerContext context = new LoggerContext();
+
+    private final List<BufferedLogstashAppender> appenders = new ArrayList<>();
+
+    @AfterEach
+    void stopAppenders() {
+        appenders.forEach(BufferedLogstashAppender::stop);
+    }
+
+    @Test
+    void shipsTheEventsInOrder() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, LOOPBACK)) {
+            BufferedLogstashAppender appender = start(server.getLocalPort());
+            log(appender, 0, 20);
+
+            assertThat(readLines(server, 20)).containsExactlyElementsOf(messages(0, 20));
+            await(() -> appender.getShippedCount() == 20);
+            assertThat(appender.getDroppedCount()).isZero();
+        }
+    }
+
+    @Test
+    void spillsWhileUnreachableAndReplaysInOrderAfterReconnecting() throws Exception {
+        int port = freePort();
+        BufferedLogstashAppender appender = start(port);
+        log(appender, 0, 100);
+        await(() -> appender.getSpilledCount() == 100);
+        assertThat(appender.getSpillSize()).isPositive();
+
+        try (ServerSocket server = listen(port)) {
+            assertThat(readLines(server, 100)).containsExactlyElementsOf(messages(0, 100));
+        }
+        await(() -> appender.getShippedCount() == 100);
+        assertThat(appender.getSpillSize()).isZero();
+        assertThat(appender.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void shipsTheNewEventsAfterTheSpilledOnes() throws Exception {
+        int port = freePort();
+        BufferedLogstashAppender appender = start(port);
+        log(appender, 0, 10);
+        await(() -> appender.getSpilledCount() == 10);
+
+        try (ServerSocket server = listen(port)) {
+            log(appender, 10, 20);
+            assertThat(readLines(server, 20)).containsExactlyElementsOf(messages(0, 20));
+        }
+    }
+
+    @Test
+    void replaysTheSpillFileOfThePreviousRun() throws Exception {
+        int port = freePort();
+        BufferedLogstashAppender first = start(port);
+        log(first, 0, 10);
+        await(() -> first.getSpilledCount() == 10);
+        first.stop();
+
+        try (ServerSocket server = listen(port)) {
+            BufferedLogstashAppender second = start(port);
+            log(second, 10, 11);
+            assertThat(readLines(server, 11)).containsExactlyElementsOf(messages(0, 11));
+        }
+    }
+
+    @Test
+    void dropsTheOverflowWhenTheSpillFileIsLocked() throws Exception {
+        try (SpillFile ignored = new SpillFile(tempDir.resolve("logstash.spill"), 1024)) {
+            BufferedLogstashAppender appender = start(freePort());
+            for (int i = 0; i < 20; i++) {
+                append(appender, "event-" + i);
+            }
+
+            // at most a queue and a batch are kept in memory
+            await(() -> appender.getDroppedCount() >= 20 - QUEUE_SIZE - 4);
+            assertThat(appender.getSpillSize()).isZero();
+            assertThat(appender.getSpilledCount()).isZero();
+        }
+    }
+
+    private BufferedLogstashAppender start(int port) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg%n");
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.start();
+
+        BufferedLogstashAppender appender = new BufferedLogstashAppender();
+        appender.setContext(context);
+        appender.setName("TEST_LOGSTASH");
+        appender.setEncoder(encoder);
+        appender.setHost(LOOPBACK.getHostAddress());
+        appender.setPort(port);
+        appender.setQueueSize(QUEUE_SIZE);
+        appender.setBatchSize(4);
+        appender.setSpillPath(tempDir.resolve("logstash.spill").toString());
+        appender.setSpillMaxSizeInBytes(64 * 1024);
+        appender.setReconnectDelayMillis(20);
+        appender.start();
+        appenders.add(appender);
+        return appender;
+    }
+
+    /**
+     * Log the events without overflowing the queue, as the shipping thread only moves the queued
+     * events to the spill file once the queue is three quarters full.
+     */
+    private void log(BufferedLogstashAppender appender, int from, int to) throws InterruptedException {
+        for (int i = from; i < to; i++) {
+            await(() -> appender.getQueueSize() < QUEUE_SIZE - 1);
+            append(appender, "event-" + i);
+        }
+    }
+
+    private void append(BufferedLogstashAppender appender, String message) {
+        appender.doAppend(
+            new LoggingEvent(getClass().getName(), context.getLogger("test"), Level.INFO, message, null, null));
+    }
+
+    private static List<String> messages(int from, int to) {
+        List<String> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add("event-" + i);
+        }
+        return messages;
+    }
+
+    private static List<String> readLines(ServerSocket server, int count) throws IOException {
+        server.setSoTimeout(30_000);
+        List<String> lines = new ArrayList<>();
+        // the appender may reconnect, e.g. after the server accepted a connection in its backlog
+        while (lines.size() < count) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(30_000);
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while (lines.size() < count && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 50, LOOPBACK)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ServerSocket listen(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(LOOPBACK, port));
+        return server;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime() - deadline).as("condition not met within 30s").isNegative();
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.polykhel.ssa.config.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpillFileTests {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] bytes(String record) {
+        return record.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String peekAll(SpillFile file) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        file.peek(output, Integer.MAX_VALUE);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reusesTheSpaceOfTheShippedRecordsAcrossTheEnd() throws IOException {
+        try (SpillFile file = new SpillFile(tempDir.resolve("ring.spill"), 32)) {
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                String record = "record-" + i + "\n";
+                if (!file.append(bytes(record))) {
+                    assertThat(peekAll(file)).isEqualTo(expected.toString());
+                    file.commit();
+                    expected.setLength(0);
+                    assertThat(file.append(bytes(record))).isTrue();
+                }
+                expected.append(record);
+            }
+            assertThat(peekAll(file)).isEqualTo(expected.toString());
+        }
+    }
+
+    @Test
+    void peekLeavesTheRecordsUntilCommitted() throws IOException {
+        try (SpillFile file = new SpillFile(tempDir.resolve("peek.spill"), 1024)) {
+            file.append(bytes("a\n"));
+            file.append(bytes("b\n"));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // the first record is copied even if it is larger than the maximum
+            assertThat(file.peek(output, 1)).isEqualTo(1);
+            assertThat(peekAll(file)).isEqualTo("a\nb\n");
+            file.peek(output, 1);
+            file.commit();
+
+            assertThat(peekAll(file)).isEqualTo("b\n");
+            assertThat(file.size()).isEqualTo(Integer.BYTES + 2);
+            assertThat(file.remaining()).isEqualTo(1024 - Integer.BYTES - 2);
+        }
+    }
+
+    @Test
+    void keepsTheRecordsAcrossRestarts() throws IOException {
+        Path path = tempDir.resolve("restart.spill");
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            file.append(bytes("a\n"));
+        }
+
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            assertThat(peekAll(file)).isEqualTo("a\n");
+        }
+    }
+
+    @Test
+    void resetsAFileWrittenWithAnotherCapacity() throws IOException {
+        Path path = tempDir.resolve("resized.spill");
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            file.append(bytes("a\n"));
+        }
+
+        try (SpillFile file = new SpillFile(path, 2048)) {
+            assertThat(file.isEmpty()).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsACorruptedRecordLength() throws IOException {
+        Path path = tempDir.resolve("corrupted.spill");
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            file.append(bytes("a\n"));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(path.toFile(), "rw")) {
+            // the first record length, after the read and write positions and the capacity
+            raw.seek(3 * Long.BYTES);
+            raw.writeInt(Integer.MAX_VALUE);
+        }
+
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            assertThatThrownBy(() -> file.peek(new ByteArrayOutputStream(), 1024))
+                .isInstanceOf(IllegalStateException.class);
+
+            file.reset();
+
+            assertThat(file.isEmpty()).isTrue();
+            assertThat(file.append(bytes("b\n"))).isTrue();
+            assertThat(peekAll(file)).isEqualTo("b\n");
+        }
+    }
+
+    @Test
+    void cannotBeOpenedTwice() throws IOException {
+        Path path = tempDir.resolve("locked.spill");
+        try (SpillFile ignored = new SpillFile(path, 1024)) {
+            assertThatThrownBy(() -> new SpillFile(path, 1024)).isInstanceOf(IOException.class);
+        }
+
+        try (SpillFile file = new SpillFile(path, 1024)) {
+            assertThat(file.isEmpty()).isTrue();
+        }
+    }
+}
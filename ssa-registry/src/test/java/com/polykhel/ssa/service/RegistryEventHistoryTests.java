@@ -0,0 +1,149 @@
+package com.polykhel.ssa.service;
+
+import com.polykhel.ssa.config.CoreProperties;
+import com.polykhel.ssa.service.dto.HistoryBucketDTO;
+import com.polykhel.ssa.service.dto.RegistryEventDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.polykhel.ssa.service.dto.RegistryEventDTO.Type.INSTANCE_CANCELED;
+import static com.polykhel.ssa.service.dto.RegistryEventDTO.Type.INSTANCE_REGISTERED;
+import static com.polykhel.ssa.service.dto.RegistryEventDTO.Type.ROUTE_ADDED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RegistryEventHistoryTests {
+
+    private static RegistryEventHistory history(int size) {
+        CoreProperties properties = new CoreProperties();
+        properties.getRegistry().getEvents().setHistorySize(size);
+        return new RegistryEventHistory(properties);
+    }
+
+    private static RegistryEventDTO event(long id, RegistryEventDTO.Type type, long timestamp, String app,
+                                         String instance) {
+        return new RegistryEventDTO(id, type, timestamp, app, instance, "UP", "/" + app + "/**", "http://" + instance);
+    }
+
+    private static List<Long> ids(List<RegistryEventDTO> events) {
+        return events.stream().map(RegistryEventDTO::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void findsTheEventsOfATimeRange() {
+        RegistryEventHistory history = history(10);
+        for (long i = 1; i <= 5; i++) {
+            history.record(event(i, INSTANCE_REGISTERED, i * 100, "GATEWAY", "gateway:" + i));
+        }
+
+        List<RegistryEventDTO> events = history.find(200, 400, null, 10);
+
+        assertThat(ids(events)).containsExactly(2L, 3L);
+        RegistryEventDTO event = events.get(0);
+        assertThat(event.getType()).isEqualTo(INSTANCE_REGISTERED);
+        assertThat(event.getTimestamp()).isEqualTo(200);
+        assertThat(event.getAppName()).isEqualTo("GATEWAY");
+        assertThat(event.getInstanceId()).isEqualTo("gateway:2");
+        assertThat(event.getStatus()).isEqualTo("UP");
+        assertThat(event.getPath()).isNull();
+        assertThat(event.getUrl()).isNull();
+        assertThat(ids(history.find(0, Long.MAX_VALUE, null, 2))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void overwritesTheOldestEventsOnceFull() {
+        RegistryEventHistory history = history(4);
+        for (long i = 1; i <= 10; i++) {
+            history.record(event(i, INSTANCE_REGISTERED, i * 100, "GATEWAY", "gateway:" + i));
+        }
+
+        assertThat(history.size()).isEqualTo(4);
+        assertThat(ids(history.find(0, Long.MAX_VALUE, null, 10))).containsExactly(7L, 8L, 9L, 10L);
+        // the binary search runs over the wrapped slots
+        assertThat(ids(history.find(750, 950, null, 10))).containsExactly(8L, 9L);
+        assertThat(ids(history.find(1000, 1001, null, 10))).containsExactly(10L);
+        assertThat(history.find(100, 600, null, 10)).isEmpty();
+    }
+
+    @Test
+    void keepsTheTimestampsInOrderWhenTheClockGoesBack() {
+        RegistryEventHistory history = history(4);
+        history.record(event(1, INSTANCE_REGISTERED, 500, "GATEWAY", "gateway:1"));
+        history.record(event(2, INSTANCE_CANCELED, 300, "GATEWAY", "gateway:1"));
+
+        List<RegistryEventDTO> events = history.find(500, 501, null, 10);
+
+        assertThat(ids(events)).containsExactly(1L, 2L);
+        assertThat(events.get(1).getTimestamp()).isEqualTo(500);
+    }
+
+    @Test
+    void filtersByApplicationIgnoringTheCase() {
+        RegistryEventHistory history = history(10);
+        history.record(event(1, INSTANCE_REGISTERED, 100, "GATEWAY", "gateway:1"));
+        history.record(event(2, INSTANCE_REGISTERED, 200, "STORE", "store:1"));
+        history.record(event(3, ROUTE_ADDED, 300, "gateway", "gateway:1"));
+
+        assertThat(ids(history.find(0, 1000, "gateway", 10))).containsExactly(3L);
+        assertThat(ids(history.find(0, 1000, "store", 10))).containsExactly(2L);
+        assertThat(history.find(0, 1000, "unknown", 10)).isEmpty();
+    }
+
+    @Test
+    void compactsTheNamesOfTheOverwrittenEvents() {
+        RegistryEventHistory history = history(2);
+        history.record(event(0, INSTANCE_REGISTERED, 0, "OLD", "old:1"));
+        for (long i = 1; i <= 100; i++) {
+            history.record(event(i, INSTANCE_REGISTERED, i, "GATEWAY", "gateway:" + i));
+            assertThat((List<?>) ReflectionTestUtils.getField(history, "names")).hasSizeLessThanOrEqualTo(3 * 2);
+        }
+
+        List<RegistryEventDTO> events = history.find(0, Long.MAX_VALUE, null, 10);
+
+        assertThat(ids(events)).containsExactly(99L, 100L);
+        assertThat(events.get(0).getInstanceId()).isEqualTo("gateway:99");
+        assertThat(events.get(1).getInstanceId()).isEqualTo("gateway:100");
+        assertThat(events.get(1).getAppName()).isEqualTo("GATEWAY");
+        assertThat(events.get(1).getStatus()).isEqualTo("UP");
+        assertThat(history.find(0, Long.MAX_VALUE, "old", 10)).isEmpty();
+    }
+
+    @Test
+    void countsTheEventsPerBucketAndType() {
+        RegistryEventHistory history = history(4);
+        for (long i = 1; i <= 10; i++) {
+            history.record(event(i, i % 2 == 0 ? INSTANCE_REGISTERED : INSTANCE_CANCELED, i * 100, "GATEWAY",
+                "gateway:" + i));
+        }
+
+        // the ring holds the events at 700, 800, 900 and 1000
+        List<HistoryBucketDTO> buckets = history.countByBucket(600, 1300, 200, null);
+
+        assertThat(buckets).extracting(HistoryBucketDTO::getStart).containsExactly(600L, 800L, 1000L, 1200L);
+        assertThat(buckets.get(0).getCounts().get(INSTANCE_CANCELED)).isEqualTo(1);
+        assertThat(buckets.get(0).getCounts().get(INSTANCE_REGISTERED)).isEqualTo(0);
+        assertThat(buckets.get(1).getCounts().get(INSTANCE_REGISTERED)).isEqualTo(1);
+        assertThat(buckets.get(1).getCounts().get(INSTANCE_CANCELED)).isEqualTo(1);
+        assertThat(buckets.get(2).getCounts().get(INSTANCE_REGISTERED)).isEqualTo(1);
+        assertThat(buckets.get(3).getCounts().values()).containsOnly(0L);
+        assertThat(history.countByBucket(600, 1300, 200, "store"))
+            .allSatisfy(bucket -> assertThat(bucket.getCounts().values()).containsOnly(0L));
+    }
+
+    @Test
+    void rejectsInvalidBuckets() {
+        RegistryEventHistory history = history(4);
+
+        assertThatThrownBy(() -> history.countByBucket(0, 100, 0, null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> history.countByBucket(100, 100, 10, null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> history.countByBucket(0, RegistryEventHistory.MAX_BUCKETS + 1L, 1, null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(history.countByBucket(0, RegistryEventHistory.MAX_BUCKETS, 1, null))
+            .hasSize(RegistryEventHistory.MAX_BUCKETS);
+    }
+}
@@ -0,0 +1,109 @@
+package com.polykhel.ssa.web.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnapshotCacheTests {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final AtomicReference<List<String>> data = new AtomicReference<>(Collections.singletonList("a"));
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/routes");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private SnapshotCache<List<String>> cache(long maxAgeMillis) {
+        return new SnapshotCache<>(() -> {
+            loads.incrementAndGet();
+            return data.get();
+        }, new ObjectMapper(), maxAgeMillis);
+    }
+
+    @Test
+    void servesTheSerializedSnapshotWithAStrongETag() {
+        SnapshotCache<List<String>> cache = cache(60_000);
+
+        ResponseEntity<byte[]> response = cache.respond(request(null));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("[\"a\"]");
+        assertThat(response.getHeaders().getETag()).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    void loadsOnceUntilInvalidated() {
+        SnapshotCache<List<String>> cache = cache(60_000);
+
+        ResponseEntity<byte[]> first = cache.respond(request(null));
+        ResponseEntity<byte[]> second = cache.respond(request(null));
+
+        assertThat(loads).hasValue(1);
+        assertThat(second.getBody()).isSameAs(first.getBody());
+        assertThat(second.getHeaders().getETag()).isEqualTo(first.getHeaders().getETag());
+    }
+
+    @Test
+    void answersNotModifiedToAMatchingETag() {
+        SnapshotCache<List<String>> cache = cache(60_000);
+        String etag = cache.respond(request(null)).getHeaders().getETag();
+
+        ResponseEntity<byte[]> response = cache.respond(request(etag));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(cache.respond(request("\"other\"")).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void invalidationReloadsAndKeepsTheETagOfUnchangedData() {
+        SnapshotCache<List<String>> cache = cache(60_000);
+        String etag = cache.respond(request(null)).getHeaders().getETag();
+
+        cache.invalidate();
+        ResponseEntity<byte[]> unchanged = cache.respond(request(etag));
+
+        assertThat(loads).hasValue(2);
+        assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        data.set(Collections.singletonList("b"));
+        cache.invalidate();
+        ResponseEntity<byte[]> changed = cache.respond(request(etag));
+
+        assertThat(loads).hasValue(3);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(new String(changed.getBody(), StandardCharsets.UTF_8)).isEqualTo("[\"b\"]");
+    }
+
+    @Test
+    void reloadsTheExpiredSnapshot() {
+        SnapshotCache<List<String>> cache = cache(0);
+
+        cache.respond(request(null));
+        cache.respond(request(null));
+
+        assertThat(loads).hasValue(2);
+    }
+}